@@ -0,0 +1,64 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+/**
+ * Builds the particle populations used by the benchmarks.  A population is a mix of stars, sparks and
+ * launch sparks spread over the visible 22 m of sky, generated from a fixed seed so every run and every
+ * benchmark measures the same particles.
+ */
+public class BenchmarkPopulation {
+
+    /**
+     * The absolute time at which the benchmarks update the particles, in seconds.
+     */
+    public final static double TIME = 1.0;
+    /**
+     * The time interval of one tick at 60 frames per second, in seconds.
+     */
+    public final static double DELTA_TIME = 1.0 / 60;
+
+    private final static long SEED = 20160712L;
+
+    private BenchmarkPopulation() {
+    }
+
+    /**
+     * Creates a population of Particle objects.
+     *
+     * @param size The number of particles.
+     * @return The particles.
+     */
+    public static Particle[] newParticles(int size) {
+        Random random = new Random(SEED);
+        Particle[] particles = new Particle[size];
+        int[] starColors = Palette.getStarColors();
+        for (int i = 0; i < size; i++) {
+            Point2D.Double position = new Point2D.Double(20 * (random.nextDouble() - 0.5), 22 * random.nextDouble());
+            Point2D.Double velocity = new Point2D.Double(6 * (random.nextDouble() - 0.5), 20 * (random.nextDouble() - 0.5));
+            int color = starColors[random.nextInt(starColors.length)];
+            // Keep the same mix as a show: very few stars, and mostly star sparks.
+            if (i % 1000 == 0)
+                particles[i] = new Star(0, position, velocity, color);
+            else if (i % 10 == 0)
+                particles[i] = new LaunchSpark(0, position, velocity, Double.MAX_VALUE, color);
+            else
+                particles[i] = new Spark(0, position, velocity, Double.MAX_VALUE, color);
+        }
+        return particles;
+    }
+
+    /**
+     * Creates a ParticleStore holding the same population as newParticles.
+     *
+     * @param size The number of particles.
+     * @return The store.
+     */
+    public static ParticleStore newStore(int size) {
+        ParticleStore store = new ParticleStore(size);
+        for (Particle particle : newParticles(size))
+            store.add(particle);
+        return store;
+    }
+}
@@ -0,0 +1,46 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Runs the benchmarks with the gc profiler, so allocation rates are reported alongside throughput,
+ * and stores the results as JSON in the results directory, one file per run.  Any of the usual JMH
+ * command line options may be given, for example a benchmark name pattern or -p size=1000.
+ * The results directory is benchmarks/results unless the fireworks.results property names another.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        File resultsDir = new File(System.getProperty("fireworks.results", "benchmarks/results"));
+        if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+            System.out.println("Cannot create results directory: " + resultsDir);
+            return;
+        }
+        String runName = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(resultsDir, runName + ".json").getPath())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,99 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of looking up a star's drag area in its BurnTable, against working it out with a cube
+ * root.  The scores are lookups per second over ages spread across the star's flight.
+ * <p>
+ * The accuracy of the table is checked once per trial before anything is measured.  The radius and
+ * drag area are compared with the closed form at SAMPLES ages from launch to the moment the star
+ * burns away, which takes in both the table and the band past 31/32 of the burn time that is worked
+ * out directly.  The trial fails if the relative error is above FLIGHT_BOUND over a star's flight,
+ * or above TABLE_BOUND at any age.  The check can also be run on its own with the main method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class BurnTableBenchmark {
+
+    /**
+     * The largest relative error allowed up to the end of a star's lifetime.
+     */
+    public final static double FLIGHT_BOUND = 6.9e-8;
+    /**
+     * The largest relative error allowed at any age before the star burns away.
+     */
+    public final static double TABLE_BOUND = 1.6e-6;
+
+    private final static int SAMPLES = 1_000_000;
+    private final static int AGES = 1024;
+
+    private final BurnTable table = Star.BURN_TABLE;
+    private final double[] ages = new double[AGES];
+
+    @Setup
+    public void setUp() {
+        check();
+        for (int i = 0; i < AGES; i++)
+            ages[i] = Star.LIFETIME * i / AGES;
+    }
+
+    @Benchmark
+    public double tableDragArea() {
+        double sum = 0;
+        for (double age : ages)
+            sum += table.getDragArea(age);
+        return sum;
+    }
+
+    @Benchmark
+    public double exactDragArea() {
+        double sum = 0;
+        for (double age : ages) {
+            double radius = table.getExactRadius(age);
+            sum += Math.PI * radius * radius;
+        }
+        return sum;
+    }
+
+    /**
+     * Compares the star's table with the closed form, and prints the largest errors found.
+     *
+     * @throws IllegalStateException If an error is above its bound.
+     */
+    public static void check() {
+        BurnTable table = Star.BURN_TABLE;
+        double maxAge = table.getMaxAge();
+        double flightError = 0;
+        double anyError = 0;
+        double fallbackError = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            double age = maxAge * i / SAMPLES;
+            double exactRadius = table.getExactRadius(age);
+            double exactArea = Math.PI * exactRadius * exactRadius;
+            double error = Math.max(Math.abs(table.getRadius(age) - exactRadius) / exactRadius,
+                    Math.abs(table.getDragArea(age) - exactArea) / exactArea);
+            anyError = Math.max(anyError, error);
+            if (age <= Star.LIFETIME)
+                flightError = Math.max(flightError, error);
+            if (age >= maxAge * 31 / 32)
+                fallbackError = Math.max(fallbackError, error);
+        }
+        System.out.printf("%nBurn table relative error: %.2e over a flight, %.2e anywhere, %.2e past 31/32 of the burn%n",
+                flightError, anyError, fallbackError);
+        if (flightError > FLIGHT_BOUND)
+            throw new IllegalStateException("Burn table error over a flight above " + FLIGHT_BOUND + ": " + flightError);
+        if (anyError > TABLE_BOUND)
+            throw new IllegalStateException("Burn table error above " + TABLE_BOUND + ": " + anyError);
+    }
+
+    public static void main(String[] args) {
+        check();
+    }
+}
@@ -0,0 +1,68 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly each spark emitter produces a population of the given size, both through
+ * Emitter.launch(time), which returns a new list every call, and through Emitter.launch(time, store),
+ * which writes each burst straight into the store.  Scores are whole populations emitted per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class EmitterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"star", "launch", "delay"})
+    public String emitterType;
+
+    private Emitter emitter;
+    private ParticleStore store;
+
+    @Setup
+    public void setUp() throws EmitterException {
+        Point2D.Double position = new Point2D.Double(0.0, 1.0);
+        Point2D.Double velocity = new Point2D.Double(1.0, 20.0);
+        switch (emitterType) {
+            case "star":
+                StarSparkEmitter starSparkEmitter = new StarSparkEmitter(position, velocity, 3, 0, 180);
+                starSparkEmitter.setColor(Palette.RED);
+                emitter = starSparkEmitter;
+                break;
+            case "launch":
+                emitter = new LaunchSparkEmitter(position, new Point2D.Double(0.0, 0.0), 20, 0, 3);
+                break;
+            default:
+                emitter = new DelaySparkEmitter(position, new Point2D.Double(0.0, 0.0), 2.2, 0, 90);
+        }
+        store = new ParticleStore(size);
+    }
+
+    @Benchmark
+    public void launchList(Blackhole blackhole) {
+        int launched = 0;
+        while (launched < size) {
+            ArrayList<? extends Particle> particles = emitter.launch(BenchmarkPopulation.TIME);
+            launched += particles.size();
+            blackhole.consume(particles);
+        }
+    }
+
+    @Benchmark
+    public ParticleStore launchStore() {
+        store.clear();
+        while (store.size() < size)
+            emitter.launch(BenchmarkPopulation.TIME, store);
+        return store;
+    }
+}
@@ -0,0 +1,68 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures removing dead particles from a population in which every other particle has expired, as
+ * happens when a burst of star sparks dies together.  Removing each dead particle with
+ * ParticleStore.remove shifts the rest of the store, so its time grows with the square of the
+ * population, while both forms of ParticleStore.removeExpired stay linear.  Scores are microseconds
+ * per whole-population pass, so a linear method takes about ten times longer at each larger size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ExpiryBenchmark {
+
+    private final static double TIME = 1.0;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private ParticleStore template;
+    private ParticleStore store;
+
+    @Setup(Level.Trial)
+    public void setUpTemplate() {
+        template = new ParticleStore(size);
+        for (int i = 0; i < size; i++) {
+            // Every other particle is past its lifetime at TIME.
+            double lifetime = i % 2 == 0 ? 0.5 : 5.0;
+            template.add(ParticleStore.SPARK, 0, i, i, 0, 0, lifetime, 0);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpStore() {
+        store = template.copy();
+    }
+
+    @Benchmark
+    public ParticleStore removeEach() {
+        int index = 0;
+        while (index < store.size()) {
+            if (TIME - store.getCreationTime(index) >= store.getLifetime(index))
+                store.remove(index);
+            else
+                index++;
+        }
+        return store;
+    }
+
+    @Benchmark
+    public ParticleStore removeExpiredInOrder() {
+        store.removeExpired(TIME, true);
+        return store;
+    }
+
+    @Benchmark
+    public ParticleStore removeExpiredSwap() {
+        store.removeExpired(TIME, false);
+        return store;
+    }
+}
@@ -0,0 +1,129 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of handing frames from the simulation to the renderer through a FrameBuffer, with one
+ * thread publishing frames of PARTICLES particles and another acquiring them, as the simulation and
+ * the painter do.  The scores are publishes and acquires per second.
+ * <p>
+ * The handoff is checked once per trial before anything is measured.  A writer thread publishes
+ * FRAMES frames, each of a different size and with every particle and tube placed at the frame's
+ * number, while the reader acquires frames as fast as it can.  The trial fails if the reader ever
+ * sees a frame older than the one before it, or a frame whose size, particles or tubes do not all
+ * match its time, which is what a frame written while it was read would look like.  The check can
+ * also be run on its own with the main method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class FrameBufferBenchmark {
+
+    /**
+     * The number of frames the writer publishes in the check.
+     */
+    public final static int FRAMES = 200_000;
+
+    private final static int PARTICLES = 1000;
+    // The sizes of the frames in the check repeat after this many.
+    private final static int SIZES = 500;
+    private final static int TUBES = 4;
+
+    private final FrameBuffer buffer = new FrameBuffer();
+    private ParticleStore store;
+    // Changed only by the publishing thread.
+    private double time;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        check();
+        store = BenchmarkPopulation.newStore(PARTICLES);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Frame publish() {
+        return buffer.publish(store, ++time);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Frame acquire() {
+        return buffer.acquire();
+    }
+
+    /**
+     * Publishes FRAMES frames on one thread while reading them on this one, and prints how many
+     * frames were read and how many of those were new.
+     *
+     * @throws IllegalStateException If a frame was read out of order or torn.
+     * @throws InterruptedException  If the thread is interrupted while waiting for the writer.
+     */
+    public static void check() throws InterruptedException {
+        FrameBuffer buffer = new FrameBuffer();
+        Thread writer = new Thread(() -> {
+            ParticleStore store = new ParticleStore();
+            double[] tubeX = new double[TUBES];
+            double[] tubeAngle = new double[TUBES];
+            for (int k = 1; k <= FRAMES; k++) {
+                store.clear();
+                for (int i = 0; i < k % SIZES; i++)
+                    store.add(ParticleStore.SPARK, k, k, k, 0, 0, 1, i % Palette.size());
+                for (int t = 0; t < TUBES; t++) {
+                    tubeX[t] = k;
+                    tubeAngle[t] = k % 90;
+                }
+                buffer.publish(store, k, k % (TUBES + 1), tubeX, tubeAngle);
+            }
+        }, "FrameBuffer check writer");
+        writer.start();
+        long reads = 0;
+        long fresh = 0;
+        long bad = 0;
+        double last = 0;
+        while (writer.isAlive() || last < FRAMES) {
+            Frame frame = buffer.acquire();
+            reads++;
+            double frameTime = frame.getTime();
+            if (frameTime < last)
+                bad++;
+            else if (frameTime > last)
+                fresh++;
+            last = frameTime;
+            if (!isWhole(frame))
+                bad++;
+        }
+        writer.join();
+        System.out.printf("%nFrameBuffer handoff: %d frames published, %d reads, %d new frames seen, %d bad%n",
+                FRAMES, reads, fresh, bad);
+        if (bad > 0)
+            throw new IllegalStateException("FrameBuffer handed over " + bad + " torn or out of order frames");
+    }
+
+    // Tells whether every part of a frame from the check matches the frame's number.
+    private static boolean isWhole(Frame frame) {
+        int k = (int) frame.getTime();
+        if (frame.size() != k % SIZES || frame.getTubeCount() != (k == 0 ? 0 : k % (TUBES + 1)))
+            return false;
+        for (int i = 0; i < frame.size(); i++) {
+            if (frame.getX(i) != k || frame.getY(i) != k)
+                return false;
+        }
+        for (int t = 0; t < frame.getTubeCount(); t++) {
+            if (frame.getTubeX(t) != k || frame.getTubeAngle(t) != k % 90)
+                return false;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        check();
+    }
+}
@@ -0,0 +1,54 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one tick of spawning and expiring sparks in a store that also holds many long-lived stars,
+ * as in a show where stars burn for seconds while sparks live for a tenth of a second.  Each tick adds
+ * a burst of sparks and removes those that have expired.  With the expiry wheel, the stars are not
+ * looked at until they are due, so the cost of a tick should hardly change with the number of stars.
+ * Scores are microseconds per tick.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class LongLivedExpiryBenchmark {
+
+    private final static double TIME_STEP = 1.0 / 60;    // seconds
+    private final static int SPARKS_PER_TICK = 200;
+    private final static double SPARK_LIFETIME = 0.1;    // seconds
+
+    @Param({"0", "100000", "1000000"})
+    public int stars;
+
+    @Param({"true", "false"})
+    public boolean preserveOrder;
+
+    private ParticleStore store;
+    private double time;    // seconds
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new ParticleStore(stars + SPARKS_PER_TICK * 16);
+        // The stars outlive the benchmark.
+        for (int i = 0; i < stars; i++)
+            store.add(ParticleStore.STAR, 0, 0, 0, 0, 0, 1e9, Palette.RED);
+        time = 0;
+        // Run until the number of sparks is steady.
+        for (int i = 0; i < 60; i++)
+            tick();
+    }
+
+    @Benchmark
+    public int tick() {
+        time += TIME_STEP;
+        for (int i = 0; i < SPARKS_PER_TICK; i++)
+            store.add(ParticleStore.SPARK, time, 0, 0, 0, 0, SPARK_LIFETIME, Palette.ORANGE);
+        return store.removeExpired(time, preserveOrder);
+    }
+}
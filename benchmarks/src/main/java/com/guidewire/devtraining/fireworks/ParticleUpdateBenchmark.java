@@ -0,0 +1,50 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full position update of a population, comparing Particle.updatePosition on one object
+ * per particle with the PositionUpdater that ParticleManager and ShowEngine run, which counts the
+ * solver's evaluations and splits a population of DEFAULT_PARALLEL_THRESHOLD or more across the
+ * common ForkJoinPool.  The store's update on its own, on one thread, is measured by
+ * RungeKuttaSolverBenchmark.advance.  Scores are whole-population updates per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ParticleUpdateBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Particle[] particles;
+    private ParticleStore store;
+    private Environment env;
+    private PositionUpdater updater;
+
+    @Setup
+    public void setUp() throws EnvironmentException {
+        particles = BenchmarkPopulation.newParticles(size);
+        store = BenchmarkPopulation.newStore(size);
+        env = new Environment(10);
+        updater = new PositionUpdater();
+    }
+
+    @Benchmark
+    public Particle[] particleObjects() {
+        for (Particle particle : particles)
+            particle.updatePosition(BenchmarkPopulation.TIME, BenchmarkPopulation.DELTA_TIME, env);
+        return particles;
+    }
+
+    @Benchmark
+    public ParticleStore positionUpdater() {
+        updater.update(store, env.getWindVelocity(), BenchmarkPopulation.TIME, BenchmarkPopulation.DELTA_TIME);
+        return store;
+    }
+}
@@ -0,0 +1,47 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the frame painted by RomanCandleWindow's PaintListener, through FrameRenderer, at the
+ * window's 800 x 600 frame size.  Scores are frames per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class RenderBenchmark {
+
+    private final static int WIDTH = 800;
+    private final static int HEIGHT = 600;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private FrameRenderer renderer;
+    private Frame frame;
+
+    @Setup
+    public void setUp() {
+        renderer = new FrameRenderer(
+                Utilities.getBufferedImageFromRelativePathToClass("images/background.png", FrameRenderer.class));
+        FrameBuffer frames = new FrameBuffer();
+        frames.publish(BenchmarkPopulation.newStore(size), BenchmarkPopulation.TIME);
+        frame = frames.acquire();
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return renderer.render(frame, WIDTH, HEIGHT, HEIGHT, 5);
+    }
+}
@@ -0,0 +1,47 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one step of the per-object RungeKuttaSolver.getNextPoint with the batch
+ * RungeKuttaSolver.advance over the same population.  Scores are whole-population steps per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class RungeKuttaSolverBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Particle[] particles;
+    private ParticleStore store;
+    private RungeKuttaSolver.Workspace workspace;
+
+    @Setup
+    public void setUp() {
+        particles = BenchmarkPopulation.newParticles(size);
+        store = BenchmarkPopulation.newStore(size);
+        workspace = new RungeKuttaSolver.Workspace();
+        workspace.ensureCapacity(size);
+    }
+
+    @Benchmark
+    public void getNextPoint(Blackhole blackhole) {
+        for (Particle particle : particles)
+            blackhole.consume(RungeKuttaSolver.getNextPoint(particle, BenchmarkPopulation.TIME,
+                    BenchmarkPopulation.DELTA_TIME));
+    }
+
+    @Benchmark
+    public ParticleStore advance() {
+        store.updatePositions(0, size, BenchmarkPopulation.TIME, BenchmarkPopulation.DELTA_TIME, workspace);
+        return store;
+    }
+}
@@ -0,0 +1,64 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one update of a show of many tubes, comparing a ShowEngine, which moves the particles of
+ * every tube in one pass over a shared store, with one ParticleManager per tube, each updated in turn.
+ * Every tube launches its stars at an angle spread across the legal range and has enough stars that
+ * the show never ends.  The show is run for five simulated seconds before measuring, by which time
+ * the number of particles has levelled off.  Scores are milliseconds per update of the whole show.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ShowBenchmark {
+
+    private final static int NUM_STARS = 100000;
+    private final static double SETTLE_TIME = 5.0;    // seconds
+    private final static double WIND = 5.0;    // m/sec
+
+    @Param({"10", "100", "1000"})
+    public int tubes;
+
+    private ShowEngine engine;
+    private ParticleManager[] managers;
+    private double engineTime;
+    private double managerTime;
+
+    @Setup(Level.Trial)
+    public void setUp() throws EnvironmentException, EmitterException {
+        engine = new ShowEngine(WIND);
+        managers = new ParticleManager[tubes];
+        for (int tube = 0; tube < tubes; tube++) {
+            double angle = -15 + 30.0 * tube / tubes;
+            engine.addTube(2.0 * tube, angle, NUM_STARS, 0);
+            managers[tube] = new ParticleManager(WIND, angle, NUM_STARS);
+            managers[tube].start(0);
+        }
+        while (engineTime < SETTLE_TIME) {
+            showEngine();
+            particleManagers();
+        }
+    }
+
+    @Benchmark
+    public ShowEngine showEngine() {
+        engineTime += BenchmarkPopulation.DELTA_TIME;
+        engine.update(engineTime);
+        return engine;
+    }
+
+    @Benchmark
+    public ParticleManager[] particleManagers() {
+        managerTime += BenchmarkPopulation.DELTA_TIME;
+        for (ParticleManager manager : managers)
+            manager.update(managerTime);
+        return managers;
+    }
+}
@@ -0,0 +1,128 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the RungeKuttaSolver with the DormandPrinceSolver at equal accuracy.  Each operation
+ * advances the population through one simulated second, one frame at a time.  The Dormand-Prince
+ * solver uses its default tolerance.  The Runge-Kutta solver splits each frame into the fewest
+ * substeps (a power of two) that make its velocity error no larger than the Dormand-Prince
+ * solver's.  Velocity is what both solvers integrate to high order.  The Runge-Kutta position
+ * update is only first order, so its position error is reported as well.
+ * <p>
+ * The accuracy is measured once per trial on the first 1000 particles of the population, against
+ * the Dormand-Prince solver at a tolerance of 1e-12.  At the end of each trial a line is printed
+ * giving the function evaluations per particle per simulated second and the largest position and
+ * velocity errors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class SolverBenchmark {
+
+    private final static int SAMPLE_SIZE = 1000;
+    private final static int MAX_SUBSTEPS = 64;
+    private final static double REFERENCE_TOLERANCE = 1e-12;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"0.016666666666666666", "0.1", "0.25"})
+    public double frameTime;
+
+    @Param({"RUNGE_KUTTA", "DORMAND_PRINCE"})
+    public Solver solver;
+
+    private ParticleStore initial;
+    private ParticleStore store;
+    private RungeKuttaSolver.Workspace workspace;
+    private int substeps;
+    private double evaluationsPerSecond;
+    private double positionError;
+    private double velocityError;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        initial = BenchmarkPopulation.newStore(size);
+        initial.setSolver(solver);
+        workspace = new RungeKuttaSolver.Workspace();
+        workspace.ensureCapacity(size);
+
+        ParticleStore reference = newSample(Solver.DORMAND_PRINCE);
+        reference.setTolerance(REFERENCE_TOLERANCE);
+        simulate(reference, 1);
+        ParticleStore adaptive = newSample(Solver.DORMAND_PRINCE);
+        double targetError = velocityError(adaptive, simulate(adaptive, 1), reference);
+        substeps = 1;
+        if (solver == Solver.RUNGE_KUTTA) {
+            ParticleStore sample = newSample(Solver.RUNGE_KUTTA);
+            long evaluations = simulate(sample, substeps);
+            while (velocityError(sample, evaluations, reference) > targetError && substeps < MAX_SUBSTEPS) {
+                substeps *= 2;
+                sample = newSample(Solver.RUNGE_KUTTA);
+                evaluations = simulate(sample, substeps);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        store = initial.copy();
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.printf("%n%s, %.4f s frames, %d substeps: %.1f evaluations per particle per simulated s, "
+                        + "position error %.2e m, velocity error %.2e m/s%n", solver, frameTime, substeps,
+                evaluationsPerSecond, positionError, velocityError);
+    }
+
+    @Benchmark
+    public ParticleStore simulate() {
+        simulate(store, substeps);
+        return store;
+    }
+
+    // Returns a store holding the first particles of the population, advanced by the given solver.
+    private ParticleStore newSample(Solver sampleSolver) {
+        ParticleStore sample = BenchmarkPopulation.newStore(SAMPLE_SIZE);
+        sample.setSolver(sampleSolver);
+        return sample;
+    }
+
+    // Advances a store through one simulated second, returning the number of function evaluations.
+    private long simulate(ParticleStore target, int numSubsteps) {
+        int frames = (int) Math.round(1 / frameTime);
+        double deltaTime = frameTime / numSubsteps;
+        double time = BenchmarkPopulation.TIME;
+        long evaluations = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            for (int step = 0; step < numSubsteps; step++) {
+                evaluations += target.updatePositions(0, target.size(), time, deltaTime, workspace);
+                time += deltaTime;
+            }
+        }
+        return evaluations;
+    }
+
+    // Records the work and the largest errors of a sample against the reference, returning the
+    // velocity error.
+    private double velocityError(ParticleStore sample, long evaluations, ParticleStore reference) {
+        positionError = 0;
+        velocityError = 0;
+        for (int i = 0; i < sample.size(); i++) {
+            positionError = Math.max(positionError, Math.hypot(sample.getX(i) - reference.getX(i),
+                    sample.getY(i) - reference.getY(i)));
+            velocityError = Math.max(velocityError, Math.hypot(
+                    sample.getVelocityX(i) - reference.getVelocityX(i),
+                    sample.getVelocityY(i) - reference.getVelocityY(i)));
+        }
+        evaluationsPerSecond = evaluations / (double) sample.size();
+        return velocityError;
+    }
+}
@@ -0,0 +1,87 @@
+package com.guidewire.devtraining.fireworks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The budget for moving sparks more cheaply than stars.  Stars always use the RungeKuttaSolver, and
+ * the sparks and launch sparks use the solver given by the sparkSolver parameter.  The scores are
+ * whole-population steps per second, so the CPU saved is the ratio of a score to the RUNGE_KUTTA one.
+ * <p>
+ * The cost in accuracy is measured once per trial on the first 1000 particles of the population.
+ * They are moved at 60 frames per second for 0.6 s, the longest a spark lives, and compared with the
+ * DormandPrinceSolver at a tolerance of 1e-12.  A line is printed at the end of each trial giving the
+ * largest and mean position error of the sparks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class SparkSolverBenchmark {
+
+    private final static int SAMPLE_SIZE = 1000;
+    private final static double SPARK_LIFETIME = 0.6;    // seconds
+    private final static double REFERENCE_TOLERANCE = 1e-12;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"RUNGE_KUTTA", "SEMI_IMPLICIT_EULER", "EXACT_DRAG"})
+    public Solver sparkSolver;
+
+    private ParticleStore store;
+    private RungeKuttaSolver.Workspace workspace;
+    private double maxError;        // metre
+    private double meanError;        // metre
+
+    @Setup
+    public void setUp() {
+        store = newStore(size, sparkSolver);
+        workspace = new RungeKuttaSolver.Workspace();
+        workspace.ensureCapacity(size);
+
+        ParticleStore reference = newStore(SAMPLE_SIZE, Solver.DORMAND_PRINCE);
+        reference.setSolver(ParticleStore.STAR, Solver.DORMAND_PRINCE);
+        reference.setTolerance(REFERENCE_TOLERANCE);
+        ParticleStore sample = newStore(SAMPLE_SIZE, sparkSolver);
+        double time = BenchmarkPopulation.TIME;
+        for (int frame = 0; frame < Math.round(SPARK_LIFETIME / BenchmarkPopulation.DELTA_TIME); frame++) {
+            reference.updatePositions(0, SAMPLE_SIZE, time, BenchmarkPopulation.DELTA_TIME, workspace);
+            sample.updatePositions(0, SAMPLE_SIZE, time, BenchmarkPopulation.DELTA_TIME, workspace);
+            time += BenchmarkPopulation.DELTA_TIME;
+        }
+        int sparks = 0;
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            if (sample.getType(i) == ParticleStore.STAR)
+                continue;
+            double error = Math.hypot(sample.getX(i) - reference.getX(i), sample.getY(i) - reference.getY(i));
+            maxError = Math.max(maxError, error);
+            meanError += error;
+            sparks++;
+        }
+        meanError /= sparks;
+    }
+
+    @TearDown
+    public void report() {
+        System.out.printf("%nSparks moved by %s: position error after %.1f s, max %.2e m, mean %.2e m%n",
+                sparkSolver, SPARK_LIFETIME, maxError, meanError);
+    }
+
+    @Benchmark
+    public ParticleStore updatePositions() {
+        store.updatePositions(0, size, BenchmarkPopulation.TIME, BenchmarkPopulation.DELTA_TIME, workspace);
+        return store;
+    }
+
+    // Returns a population with the stars on the RungeKuttaSolver and the sparks on the given solver.
+    private static ParticleStore newStore(int size, Solver solver) {
+        ParticleStore population = BenchmarkPopulation.newStore(size);
+        population.setSolver(solver);
+        population.setSolver(ParticleStore.STAR, Solver.RUNGE_KUTTA);
+        return population;
+    }
+}
@@ -0,0 +1,29 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The specification that must be followed by any collection of particles supplied to the batch form
+ * of the RungeKuttaSolver.  Where ODESystem describes the motion of one object, a BatchODESystem
+ * describes the motion of many objects at once, each identified by its index, so that a whole
+ * population can be advanced without creating an object for each member.
+ *
+ * @version 1.0
+ */
+public interface BatchODESystem {
+
+    /**
+     * Calculates the values of the functions fX() and fY() for every member of the batch between the
+     * two indices, at the supplied absolute time and velocity components.  All arrays are indexed by
+     * member index, so only the elements from (and including) from, up to (but not including) to, are
+     * read or written.  Implementations must not allocate.
+     *
+     * @param from The index of the first member.
+     * @param to   One past the index of the last member.
+     * @param time The absolute time in seconds.
+     * @param vx   The X velocity components in m/sec.
+     * @param vy   The Y velocity components in m/sec.
+     * @param fx   Receives the fX() values.
+     * @param fy   Receives the fY() values.
+     */
+    void getFunction(int from, int to, double time, double[] vx, double[] vy, double[] fx, double[] fy);
+
+}
@@ -0,0 +1,135 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The mass, radius and drag area of a burning star against its age.  A star loses mass at a constant
+ * rate, so its mass is simply worked out, but its radius is the cube root of its volume, so without
+ * the table every evaluation of the drag equations needs a cube root.  The table holds the radius and
+ * drag area at evenly spaced ages and interpolates linearly between them.  Just before the star has
+ * burnt away the radius curves too sharply to interpolate, so the table stops short of that, and
+ * ages outside the table are worked out directly.
+ * <p>
+ * A table depends only on the burn parameters, so stars with the same parameters share one table,
+ * which getInstance returns.  Tables are never changed after they are built and may be used by any
+ * number of threads.
+ *
+ * @version 1.0
+ */
+public class BurnTable {
+
+    /**
+     * The number of intervals the table is divided into.
+     */
+    public final static int INTERVALS = 4096;
+    // The fraction of the burn time at the end that is left out of the table.
+    private final static double UNTABLED_FRACTION = 1.0 / 32;
+
+    private final static ConcurrentHashMap<List<Double>, BurnTable> TABLES = new ConcurrentHashMap<>();
+
+    private final double startingMass;    // kg
+    private final double burnRate;        // kg/second
+    private final double density;        // kg/m*m*m
+    private final double maxAge;        // seconds
+    private final double agesPerStep;    // 1/seconds
+    private final double[] radius = new double[INTERVALS + 1];        // metre
+    private final double[] dragArea = new double[INTERVALS + 1];    // m*m
+
+    // Use getInstance, so tables are shared.
+    private BurnTable(double startingMass, double burnRate, double density) {
+        this.startingMass = startingMass;
+        this.burnRate = burnRate;
+        this.density = density;
+        maxAge = startingMass / burnRate;
+        agesPerStep = INTERVALS / (maxAge * (1 - UNTABLED_FRACTION));
+        for (int i = 0; i <= INTERVALS; i++) {
+            double age = i / agesPerStep;
+            radius[i] = getExactRadius(age);
+            dragArea[i] = Math.PI * radius[i] * radius[i];
+        }
+    }
+
+    /**
+     * Returns the table for a set of burn parameters, building it the first time it is asked for.
+     *
+     * @param startingMass The mass of the star at launch in kg.
+     * @param burnRate     The rate at which the star loses mass in kg/second.
+     * @param density      The density of the star in kg/m*m*m.
+     * @return The shared table.
+     */
+    public static BurnTable getInstance(double startingMass, double burnRate, double density) {
+        if (startingMass <= 0 || burnRate <= 0 || density <= 0)
+            throw new IllegalArgumentException("Burn parameters must be positive: " + startingMass
+                    + ", " + burnRate + ", " + density);
+        return TABLES.computeIfAbsent(Arrays.asList(startingMass, burnRate, density),
+                key -> new BurnTable(startingMass, burnRate, density));
+    }
+
+    /**
+     * Returns the mass of the star at the given age.
+     *
+     * @param age The time since the star was launched, in seconds.
+     * @return The mass in kg.
+     */
+    public double getMass(double age) {
+        return startingMass - age * burnRate;
+    }
+
+    /**
+     * Returns the radius of the star at the given age.
+     *
+     * @param age The time since the star was launched, in seconds.
+     * @return The radius in metres.
+     */
+    public double getRadius(double age) {
+        double position = age * agesPerStep;
+        if (!(position >= 0 && position < INTERVALS))
+            return getExactRadius(age);
+        return interpolate(radius, position);
+    }
+
+    /**
+     * Returns the area the star presents to the air at the given age, which is the area of a circle
+     * of its radius.
+     *
+     * @param age The time since the star was launched, in seconds.
+     * @return The drag area in m*m.
+     */
+    public double getDragArea(double age) {
+        double position = age * agesPerStep;
+        if (!(position >= 0 && position < INTERVALS)) {
+            double exactRadius = getExactRadius(age);
+            return Math.PI * exactRadius * exactRadius;
+        }
+        return interpolate(dragArea, position);
+    }
+
+    /**
+     * An accessor for the age at which the star has burnt away.
+     *
+     * @return The age in seconds.
+     */
+    public double getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Works out the radius of the star at the given age without the table.
+     *
+     * @param age The time since the star was launched, in seconds.
+     * @return The radius in metres.
+     */
+    public double getExactRadius(double age) {
+        double volume = getMass(age) / density;
+        return Math.pow(3 * volume / (4 * Math.PI), 1.0 / 3.0);
+    }
+
+    // Interpolates linearly between the two entries either side of a position in the table.
+    private static double interpolate(double[] values, double position) {
+        int i = (int) position;
+        double fraction = position - i;
+        return values[i] + fraction * (values[i + 1] - values[i]);
+    }
+}
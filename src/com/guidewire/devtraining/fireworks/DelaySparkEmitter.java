@@ -4,7 +4,9 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 
 /**
- * Emitter for delay charge sparks.
+ * Emitter for delay charge sparks.  Bursts are scaled by the emitter's ParticleBudget.
+ *
+ * @version 1.3
  */
 public class DelaySparkEmitter extends Emitter {
 
@@ -33,16 +35,17 @@ public class DelaySparkEmitter extends Emitter {
      * @return An ArrayList containing Sparks.
      */
     public ArrayList<Spark> launch(double time) {
-        double angle;
-        Point2D.Double vInitial;
         Point2D.Double position = getPosition();
-        Point2D.Double velocity = getVelocity();
-        ArrayList<Spark> sparks = new ArrayList<>(NUM_LAUNCHED);
-        for (int i = 0; i < NUM_LAUNCHED; i++) {
-            angle = getRandomLaunchAngle();
-            vInitial = new Point2D.Double(velocity.x + getExitVelocity() * Math.sin(angle), velocity.y + getExitVelocity() * Math.cos(angle));
-            sparks.add(new Spark(time, position, vInitial, LIFETIME, "orange"));
-        }
+        int count = drawBurst(budgetCount(NUM_LAUNCHED), time, 0);
+        double lifetime = budgetLifetime(LIFETIME);
+        ArrayList<Spark> sparks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            sparks.add(new Spark(time, position, getBurstVelocity(i), lifetime, Palette.ORANGE));
         return sparks;
     }
+
+    protected int emit(double time, ParticleStore store, int group) {
+        return emitBurst(store, group, ParticleStore.SPARK, budgetCount(NUM_LAUNCHED), time, 0,
+                budgetLifetime(LIFETIME), Palette.ORANGE);
+    }
 }
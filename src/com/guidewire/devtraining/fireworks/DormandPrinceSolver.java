@@ -0,0 +1,257 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.awt.geom.Point2D;
+
+/**
+ * An adaptive solver for systems of ordinary differential equations, using the embedded fifth and
+ * fourth order Runge-Kutta pair of Dormand and Prince.  Each step gives two estimates of the next
+ * point, and the difference between them estimates the error of the step.  A step whose error is
+ * larger than the tolerance is tried again with a shorter step, and the next step is lengthened or
+ * shortened so its error will be close to the tolerance.
+ * <p>
+ * A time interval is therefore covered by as many steps as the motion needs: slow, smooth sparks in
+ * one step and fast particles just after launch in several.  The last function value of a step is
+ * the first of the next, so each accepted step after the first costs six function evaluations.
+ * <p>
+ * A step whose error cannot be measured, because it is not a finite number, is rejected and tried
+ * again with the shortest step, so a bad function value can never leave the step undefined.
+ *
+ * @version 1.1
+ */
+public class DormandPrinceSolver {
+
+    /**
+     * The default tolerance on the scaled error of a step.
+     */
+    public final static double DEFAULT_TOLERANCE = 1e-6;
+
+    // The shortest step tried, in seconds.  A step this short is accepted whatever its error.
+    private final static double MIN_STEP = 1e-6;
+    private final static double SAFETY = 0.9;
+    private final static double MIN_SCALE = 0.2;
+    private final static double MAX_SCALE = 5;
+
+    private final static double C2 = 1.0 / 5, C3 = 3.0 / 10, C4 = 4.0 / 5, C5 = 8.0 / 9;
+    private final static double A21 = 1.0 / 5;
+    private final static double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private final static double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private final static double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187, A53 = 64448.0 / 6561,
+            A54 = -212.0 / 729;
+    private final static double A61 = 9017.0 / 3168, A62 = -355.0 / 33, A63 = 46732.0 / 5247,
+            A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    // The weights of the fifth order estimate.
+    private final static double B1 = 35.0 / 384, B3 = 500.0 / 1113, B4 = 125.0 / 192,
+            B5 = -2187.0 / 6784, B6 = 11.0 / 84;
+    // The differences between the fifth and fourth order weights.
+    private final static double E1 = 71.0 / 57600, E3 = -71.0 / 16695, E4 = 71.0 / 1920,
+            E5 = -17253.0 / 339200, E6 = 22.0 / 525, E7 = -1.0 / 40;
+
+    /**
+     * Estimates the next point generated by an ODE system, in as many steps as are needed to keep
+     * the error of each step within the tolerance.  Invokes the methods from the ode object that were
+     * specified by the ODESystem interface, as RungeKuttaSolver.getNextPoint does.
+     *
+     * @param ode       The class, implementing ODESystem, that contains the system of differential equations
+     *                  to be solved.
+     * @param time      The current time.  It is assumed that the point for this time is known and
+     *                  can be obtained from the ode object.
+     * @param deltaTime The time interval in seconds.
+     * @param tolerance The largest error allowed in each step, relative to the size of the values
+     *                  plus one.
+     * @return Returns an array sized to the system size containing the estimates
+     * of the dependent variables at time + deltaTime.
+     */
+    public static double[] getNextPoint(ODESystem ode, double time, double deltaTime, double tolerance) {
+        int n = ode.getSystemSize();
+        Point2D.Double velocity = ode.getVelocity();
+        double[] values = new double[n];
+        values[0] = velocity.x;
+        values[1] = velocity.y;
+        double[] stage = new double[n];
+        double[] next = new double[n];
+        double end = time + deltaTime;
+        double step = deltaTime;
+        double[] k1 = ode.getFunction(time, values);
+        while (time < end) {
+            boolean last = step >= end - time;
+            double h = last ? end - time : step;
+            for (int j = 0; j < n; j++)
+                stage[j] = values[j] + h * A21 * k1[j];
+            double[] k2 = ode.getFunction(time + C2 * h, stage);
+            for (int j = 0; j < n; j++)
+                stage[j] = values[j] + h * (A31 * k1[j] + A32 * k2[j]);
+            double[] k3 = ode.getFunction(time + C3 * h, stage);
+            for (int j = 0; j < n; j++)
+                stage[j] = values[j] + h * (A41 * k1[j] + A42 * k2[j] + A43 * k3[j]);
+            double[] k4 = ode.getFunction(time + C4 * h, stage);
+            for (int j = 0; j < n; j++)
+                stage[j] = values[j] + h * (A51 * k1[j] + A52 * k2[j] + A53 * k3[j] + A54 * k4[j]);
+            double[] k5 = ode.getFunction(time + C5 * h, stage);
+            for (int j = 0; j < n; j++)
+                stage[j] = values[j] + h * (A61 * k1[j] + A62 * k2[j] + A63 * k3[j] + A64 * k4[j]
+                        + A65 * k5[j]);
+            double[] k6 = ode.getFunction(time + h, stage);
+            for (int j = 0; j < n; j++)
+                next[j] = values[j] + h * (B1 * k1[j] + B3 * k3[j] + B4 * k4[j] + B5 * k5[j] + B6 * k6[j]);
+            double[] k7 = ode.getFunction(time + h, next);
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                double error = h * (E1 * k1[j] + E3 * k3[j] + E4 * k4[j] + E5 * k5[j] + E6 * k6[j]
+                        + E7 * k7[j]);
+                double scaled = error / (tolerance * (1 + Math.max(Math.abs(values[j]), Math.abs(next[j]))));
+                sum += scaled * scaled;
+            }
+            double error = Math.sqrt(sum / n);
+            boolean accepted = error <= 1 || h <= MIN_STEP;
+            if (accepted) {
+                time = last ? end : time + h;
+                double[] swap = values;
+                values = next;
+                next = swap;
+                k1 = k7;
+            }
+            step = nextStep(step, h, error, accepted, last);
+        }
+        return values;
+    }
+
+    /**
+     * Advances the velocity and position of every member of a batch by one time interval, in place,
+     * taking as many steps as each member needs.  Unlike RungeKuttaSolver.advance, the position is
+     * integrated by the same steps as the velocity, so it is as accurate as the velocity.
+     * <p>
+     * The step each member will try first is kept in the steps array, so a member that needed short
+     * steps in one interval starts the next with a short step rather than having it rejected again.
+     * A step of zero means the member has not been advanced before.  Nothing is allocated unless the
+     * workspace has to grow.
+     * <p>
+     * Each member takes its own steps, so the members are advanced one at a time and the batch is
+     * called for a single member at each stage: one call to start the member, and six for each step
+     * tried, accepted or not.  The calls are not shared across members as they are in
+     * RungeKuttaSolver.advance, so a member costs about as much here as through getNextPoint, less
+     * the allocation.
+     *
+     * @param ode       The batch, implementing BatchODESystem, that contains the differential equations.
+     * @param x         The X positions in metres.
+     * @param y         The Y positions in metres.
+     * @param vx        The X velocity components in m/sec.
+     * @param vy        The Y velocity components in m/sec.
+     * @param steps     The step each member will try first, in seconds.
+     * @param from      The index of the first member to advance.
+     * @param to        One past the index of the last member to advance.
+     * @param time      The current absolute time in seconds.
+     * @param deltaTime The time interval in seconds.
+     * @param tolerance The largest error allowed in each step, relative to the size of the values
+     *                  plus one.
+     * @param workspace The scratch buffers used to call the batch.
+     * @return The number of function evaluations made, counting each member separately.
+     */
+    public static long advance(BatchODESystem ode, double[] x, double[] y, double[] vx, double[] vy,
+                               double[] steps, int from, int to, double time, double deltaTime,
+                               double tolerance, RungeKuttaSolver.Workspace workspace) {
+        workspace.ensureCapacity(to);
+        double[] inX = workspace.midX;
+        double[] inY = workspace.midY;
+        double[] outX = workspace.kx;
+        double[] outY = workspace.ky;
+        double end = time + deltaTime;
+        long evaluations = 0;
+        for (int i = from; i < to; i++) {
+            double px = x[i], py = y[i], ux = vx[i], uy = vy[i];
+            double t = time;
+            double step = steps[i] > 0 ? steps[i] : deltaTime;
+            inX[i] = ux;
+            inY[i] = uy;
+            ode.getFunction(i, i + 1, t, inX, inY, outX, outY);
+            double k1x = outX[i], k1y = outY[i];
+            evaluations++;
+            while (t < end) {
+                boolean last = step >= end - t;
+                double h = last ? end - t : step;
+                // The velocity at each stage is also the derivative of the position at that stage.
+                double u2x = ux + h * A21 * k1x;
+                double u2y = uy + h * A21 * k1y;
+                inX[i] = u2x;
+                inY[i] = u2y;
+                ode.getFunction(i, i + 1, t + C2 * h, inX, inY, outX, outY);
+                double k2x = outX[i], k2y = outY[i];
+                double u3x = ux + h * (A31 * k1x + A32 * k2x);
+                double u3y = uy + h * (A31 * k1y + A32 * k2y);
+                inX[i] = u3x;
+                inY[i] = u3y;
+                ode.getFunction(i, i + 1, t + C3 * h, inX, inY, outX, outY);
+                double k3x = outX[i], k3y = outY[i];
+                double u4x = ux + h * (A41 * k1x + A42 * k2x + A43 * k3x);
+                double u4y = uy + h * (A41 * k1y + A42 * k2y + A43 * k3y);
+                inX[i] = u4x;
+                inY[i] = u4y;
+                ode.getFunction(i, i + 1, t + C4 * h, inX, inY, outX, outY);
+                double k4x = outX[i], k4y = outY[i];
+                double u5x = ux + h * (A51 * k1x + A52 * k2x + A53 * k3x + A54 * k4x);
+                double u5y = uy + h * (A51 * k1y + A52 * k2y + A53 * k3y + A54 * k4y);
+                inX[i] = u5x;
+                inY[i] = u5y;
+                ode.getFunction(i, i + 1, t + C5 * h, inX, inY, outX, outY);
+                double k5x = outX[i], k5y = outY[i];
+                double u6x = ux + h * (A61 * k1x + A62 * k2x + A63 * k3x + A64 * k4x + A65 * k5x);
+                double u6y = uy + h * (A61 * k1y + A62 * k2y + A63 * k3y + A64 * k4y + A65 * k5y);
+                inX[i] = u6x;
+                inY[i] = u6y;
+                ode.getFunction(i, i + 1, t + h, inX, inY, outX, outY);
+                double k6x = outX[i], k6y = outY[i];
+                double u7x = ux + h * (B1 * k1x + B3 * k3x + B4 * k4x + B5 * k5x + B6 * k6x);
+                double u7y = uy + h * (B1 * k1y + B3 * k3y + B4 * k4y + B5 * k5y + B6 * k6y);
+                inX[i] = u7x;
+                inY[i] = u7y;
+                ode.getFunction(i, i + 1, t + h, inX, inY, outX, outY);
+                double k7x = outX[i], k7y = outY[i];
+                evaluations += 6;
+                double nextX = px + h * (B1 * ux + B3 * u3x + B4 * u4x + B5 * u5x + B6 * u6x);
+                double nextY = py + h * (B1 * uy + B3 * u3y + B4 * u4y + B5 * u5y + B6 * u6y);
+                double error = Math.sqrt((
+                        square(h * (E1 * k1x + E3 * k3x + E4 * k4x + E5 * k5x + E6 * k6x + E7 * k7x), ux, u7x, tolerance)
+                        + square(h * (E1 * k1y + E3 * k3y + E4 * k4y + E5 * k5y + E6 * k6y + E7 * k7y), uy, u7y, tolerance)
+                        + square(h * (E1 * ux + E3 * u3x + E4 * u4x + E5 * u5x + E6 * u6x + E7 * u7x), px, nextX, tolerance)
+                        + square(h * (E1 * uy + E3 * u3y + E4 * u4y + E5 * u5y + E6 * u6y + E7 * u7y), py, nextY, tolerance)
+                ) / 4);
+                boolean accepted = error <= 1 || h <= MIN_STEP;
+                if (accepted) {
+                    t = last ? end : t + h;
+                    px = nextX;
+                    py = nextY;
+                    ux = u7x;
+                    uy = u7y;
+                    k1x = k7x;
+                    k1y = k7y;
+                }
+                step = nextStep(step, h, error, accepted, last);
+            }
+            x[i] = px;
+            y[i] = py;
+            vx[i] = ux;
+            vy[i] = uy;
+            steps[i] = step;
+        }
+        return evaluations;
+    }
+
+    // Returns the square of an error scaled by the tolerance and the size of the value it applies to.
+    private static double square(double error, double value, double nextValue, double tolerance) {
+        double scaled = error / (tolerance * (1 + Math.max(Math.abs(value), Math.abs(nextValue))));
+        return scaled * scaled;
+    }
+
+    // Returns the step to try next.  A step shortened only to end at the end of the interval does not
+    // shorten the steps that follow it, and one whose error is not finite is followed by the shortest.
+    private static double nextStep(double step, double h, double error, boolean accepted, boolean last) {
+        if (!Double.isFinite(error))
+            return MIN_STEP;
+        double scale = error == 0 ? MAX_SCALE
+                : Math.min(MAX_SCALE, Math.max(MIN_SCALE, SAFETY * Math.pow(error, -0.2)));
+        if (!accepted)
+            return Math.max(h * Math.min(scale, 1), MIN_STEP);
+        if (last && h < step)
+            return Math.max(step, h * scale);
+        return h * scale;
+    }
+}
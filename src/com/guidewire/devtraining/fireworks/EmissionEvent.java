@@ -0,0 +1,36 @@
+package com.guidewire.devtraining.fireworks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one burst of particles launched by an Emitter into a ParticleStore.
+ * When no recording is running, the event costs almost nothing.
+ *
+ * @version 1.0
+ */
+@Name("com.guidewire.devtraining.fireworks.Emission")
+@Label("Emission")
+@Category("Fireworks")
+@Description("Particles launched by an emitter")
+@StackTrace(false)
+class EmissionEvent extends jdk.jfr.Event {
+
+    @Label("Emitter")
+    @Description("The class of the emitter")
+    String emitter;
+
+    @Label("Group")
+    @Description("The group given to the particles, such as the index of the launch tube")
+    int group;
+
+    @Label("Spawned")
+    int spawned;
+
+    @Label("Particles")
+    @Description("The number of particles in the store after the burst")
+    int particles;
+}
@@ -2,15 +2,38 @@ package com.guidewire.devtraining.fireworks;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
- * The base class for Emitter objects.
+ * The base class for Emitter objects.  Each emitter owns its random number generator, so emitters
+ * never contend for one, and a show whose generators are all split from one seeded generator can be
+ * repeated exactly.
+ * <p>
+ * Particles can be launched as objects, or written straight into a ParticleStore.  The emitters of
+ * this package write a whole burst into the store at once: the random launch angles of the burst are
+ * drawn together into a scratch array that the emitter keeps, the velocities are worked out from them
+ * in a second pass, and the store copies the arrays in bulk, so launching into a store allocates
+ * nothing.  Launching as objects draws the burst in the same way and then builds the objects from the
+ * scratch arrays, so the same seed gives the same show whichever way it is launched.
+ * <p>
+ * An emitter may be given a ParticleBudget, by which emitters of sparks scale down their bursts when
+ * the show is close to missing its frame deadline.
  */
 public abstract class Emitter extends Firework {
 
     private double launchAngle = 0;                // radians
     private double launchAngleVariation = 0;    // radians
     private double exitVelocity;                // m/sec
+    private SplittableRandom random = new SplittableRandom();
+    // Scratch columns for a burst written straight into a store, reused from one burst to the next.
+    private double[] burstVx = new double[0];        // m/sec
+    private double[] burstVy = new double[0];        // m/sec
+    private double[] burstTime = new double[0];        // seconds
+    private ParticleBudget budget;
+    // The part of a particle left over from scaling the bursts so far, so that scaled bursts launch
+    // the scaled number of particles on average.
+    private double owed;
 
     /**
      * The constructor for an Emitter object.
@@ -28,10 +51,7 @@ public abstract class Emitter extends Firework {
         super(initialPos, initialV);
         this.exitVelocity = exitVelocity;
         setLaunchAngle(firingAngle);
-        if (variation < 0 || variation > 180)
-            throw new EmitterException("Firing angle variation out of range: " + variation);
-        else
-            launchAngleVariation = variation * Math.PI / 180.0;
+        setLaunchAngleVariation(variation);
     }
 
     /**
@@ -41,7 +61,26 @@ public abstract class Emitter extends Firework {
      * @return The launch angle in radians.
      */
     public double getRandomLaunchAngle() {
-        return launchAngle + launchAngleVariation * 2 * (Math.random() - 0.5);
+        return launchAngle + launchAngleVariation * 2 * (random.nextDouble() - 0.5);
+    }
+
+    /**
+     * A mutator for the random number generator, which is seeded unpredictably by default.  The
+     * generator belongs to the emitter from then on, so it should not be shared.
+     *
+     * @param random The generator, usually split from a seeded show generator.
+     */
+    public void setRandom(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * An accessor for the random number generator, for use by subclasses as they launch particles.
+     *
+     * @return The generator.
+     */
+    protected SplittableRandom getRandom() {
+        return random;
     }
 
     /**
@@ -78,6 +117,28 @@ public abstract class Emitter extends Firework {
             launchAngle = angleDeg * Math.PI / 180.0;
     }
 
+    /**
+     * An accessor for the random variation range of the launch angle.
+     *
+     * @return The variation in degrees.
+     */
+    public double getLaunchAngleVariation() {
+        return launchAngleVariation * 180.0 / Math.PI;
+    }
+
+    /**
+     * A mutator for the random variation range of the launch angle.
+     *
+     * @param variation The variation in degrees.
+     * @throws EmitterException If the variation is not between 0 and 180 degrees, inclusive.
+     */
+    public void setLaunchAngleVariation(double variation) throws EmitterException {
+        if (variation < 0 || variation > 180)
+            throw new EmitterException("Firing angle variation out of range: " + variation);
+        else
+            launchAngleVariation = variation * Math.PI / 180.0;
+    }
+
     /**
      * Launches particles at the supplied time.
      *
@@ -87,4 +148,177 @@ public abstract class Emitter extends Firework {
      */
     public abstract ArrayList<? extends Particle> launch(double time);
 
+    /**
+     * Launches particles at the supplied time and adds them to a particle store.
+     *
+     * @param time  Time in seconds
+     * @param store The store that receives the launched particles.
+     * @return The number of particles launched.
+     */
+    public int launch(double time, ParticleStore store) {
+        return launch(time, store, 0);
+    }
+
+    /**
+     * Launches particles at the supplied time and adds them to a particle store in the given group.
+     *
+     * @param time  Time in seconds
+     * @param store The store that receives the launched particles.
+     * @param group The group number given to each particle, such as the index of its launch tube.
+     * @return The number of particles launched.
+     */
+    public int launch(double time, ParticleStore store, int group) {
+        EmissionEvent event = new EmissionEvent();
+        event.begin();
+        int launched = emit(time, store, group);
+        if (event.shouldCommit()) {
+            event.emitter = getClass().getSimpleName();
+            event.group = group;
+            event.spawned = launched;
+            event.particles = store.size();
+            event.commit();
+        }
+        return launched;
+    }
+
+    /**
+     * Writes the particles launched at the supplied time into a store.  By default the particles are
+     * launched as objects and copied into the store; subclasses should write them straight into the
+     * store with emitBurst instead.
+     *
+     * @param time  Time in seconds
+     * @param store The store that receives the launched particles.
+     * @param group The group number given to each particle.
+     * @return The number of particles launched.
+     */
+    protected int emit(double time, ParticleStore store, int group) {
+        ArrayList<? extends Particle> particles = launch(time);
+        for (Particle particle : particles)
+            store.add(particle, group);
+        return particles.size();
+    }
+
+    /**
+     * Writes a burst of particles straight into a store, drawn as drawBurst draws them.
+     *
+     * @param store      The store that receives the particles.
+     * @param group      The group number given to each particle.
+     * @param type       The type index of the particles: STAR, SPARK or LAUNCH_SPARK.
+     * @param count      The number of particles.
+     * @param time       The absolute launch time in seconds.
+     * @param timeSpread The range in seconds, centred on the launch time, over which the creation
+     *                   times are scattered at random, or 0 to create every particle at the launch time.
+     * @param lifetime   The lifetime of the particles in seconds.
+     * @param color      The Palette index of the color of the particles.
+     * @return The number of particles launched.
+     */
+    protected int emitBurst(ParticleStore store, int group, byte type, int count, double time,
+                            double timeSpread, double lifetime, int color) {
+        if (drawBurst(count, time, timeSpread) == 0)
+            return 0;
+        store.add(type, count, burstTime, getX(), getY(), burstVx, burstVy, lifetime, color, group);
+        return count;
+    }
+
+    /**
+     * Draws the velocities and creation times of a burst into the emitter's scratch arrays, where
+     * getBurstVelocity and getBurstTime read them.  Each particle leaves the emitter's position at the
+     * exit velocity, at a random launch angle, on top of the emitter's own velocity.  All of the launch
+     * angles are drawn first, then all of the creation times, so each loop does one thing.  Nothing is
+     * drawn for an empty burst.
+     *
+     * @param count      The number of particles.
+     * @param time       The absolute launch time in seconds.
+     * @param timeSpread The range in seconds, centred on the launch time, over which the creation
+     *                   times are scattered at random, or 0 to create every particle at the launch time.
+     * @return The number of particles drawn.
+     */
+    protected int drawBurst(int count, double time, double timeSpread) {
+        if (count == 0)
+            return 0;
+        if (burstVx.length < count) {
+            burstVx = new double[count];
+            burstVy = new double[count];
+            burstTime = new double[count];
+        }
+        double[] vx = burstVx;
+        double[] vy = burstVy;
+        // Draw the angles into the X column, then turn each into a velocity.
+        double range = launchAngleVariation * 2;
+        for (int i = 0; i < count; i++)
+            vx[i] = launchAngle + range * (random.nextDouble() - 0.5);
+        double baseVx = getVelocityX();
+        double baseVy = getVelocityY();
+        for (int i = 0; i < count; i++) {
+            double angle = vx[i];
+            vx[i] = baseVx + exitVelocity * Math.sin(angle);
+            vy[i] = baseVy + exitVelocity * Math.cos(angle);
+        }
+        if (timeSpread > 0) {
+            for (int i = 0; i < count; i++)
+                burstTime[i] = time + timeSpread * (random.nextDouble() - 0.5);
+        } else {
+            Arrays.fill(burstTime, 0, count, time);
+        }
+        return count;
+    }
+
+    /**
+     * An accessor for the launch velocity of a particle of the last burst drawn.
+     *
+     * @param i The index of the particle in the burst.
+     * @return A new point holding the velocity components in m/sec.
+     */
+    protected Point2D.Double getBurstVelocity(int i) {
+        return new Point2D.Double(burstVx[i], burstVy[i]);
+    }
+
+    /**
+     * An accessor for the creation time of a particle of the last burst drawn.
+     *
+     * @param i The index of the particle in the burst.
+     * @return The absolute time in seconds.
+     */
+    protected double getBurstTime(int i) {
+        return burstTime[i];
+    }
+
+    /**
+     * A mutator for the budget that scales the bursts of emitters that honour it.
+     *
+     * @param budget The budget, or null to always launch the usual bursts.
+     */
+    public void setBudget(ParticleBudget budget) {
+        this.budget = budget;
+        owed = 0;
+    }
+
+    /**
+     * Scales the number of particles in a burst by the budget's emission scale.  The fraction of a
+     * particle left over is carried to the next burst, so a burst of 5 at a scale of 0.3 launches 1,
+     * 2, 1, 2 and so on.
+     *
+     * @param count The usual number of particles.
+     * @return The number of particles to launch.
+     */
+    protected int budgetCount(int count) {
+        if (budget == null)
+            return count;
+        double exact = count * budget.getEmissionScale() + owed;
+        int scaled = (int) exact;
+        owed = exact - scaled;
+        return scaled;
+    }
+
+    /**
+     * Scales the lifetime of the particles in a burst by the budget's lifetime scale.
+     *
+     * @param lifetime The usual lifetime in seconds.
+     * @return The lifetime to give the particles in seconds.
+     */
+    protected double budgetLifetime(double lifetime) {
+        return budget == null ? lifetime : lifetime * budget.getLifetimeScale();
+    }
+
+
 }
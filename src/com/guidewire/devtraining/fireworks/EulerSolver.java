@@ -0,0 +1,42 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The cheapest solver: semi-implicit (symplectic) Euler.  Each step evaluates the differential
+ * equations once, at the start of the step, moves the velocity by the acceleration found, and then
+ * moves the position by the new velocity.  It is only first order, so it suits particles that live
+ * for a fraction of a second and are drawn a couple of pixels wide.
+ *
+ * @version 1.0
+ */
+public class EulerSolver {
+
+    /**
+     * Advances the velocity and position of every member of a batch by one time interval, in place.
+     * Nothing is allocated unless the workspace has to grow.
+     *
+     * @param ode       The batch, implementing BatchODESystem, that contains the differential equations.
+     * @param x         The X positions in metres.
+     * @param y         The Y positions in metres.
+     * @param vx        The X velocity components in m/sec.
+     * @param vy        The Y velocity components in m/sec.
+     * @param from      The index of the first member to advance.
+     * @param to        One past the index of the last member to advance.
+     * @param time      The current absolute time in seconds.
+     * @param deltaTime The time interval in seconds.
+     * @param workspace The scratch buffers used for the accelerations.
+     */
+    public static void advance(BatchODESystem ode, double[] x, double[] y, double[] vx, double[] vy,
+                               int from, int to, double time, double deltaTime,
+                               RungeKuttaSolver.Workspace workspace) {
+        workspace.ensureCapacity(to);
+        double[] kx = workspace.kx;
+        double[] ky = workspace.ky;
+        ode.getFunction(from, to, time, vx, vy, kx, ky);
+        for (int i = from; i < to; i++) {
+            vx[i] += deltaTime * kx[i];
+            vy[i] += deltaTime * ky[i];
+            x[i] += vx[i] * deltaTime;
+            y[i] += vy[i] * deltaTime;
+        }
+    }
+}
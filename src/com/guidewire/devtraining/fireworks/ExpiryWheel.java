@@ -0,0 +1,224 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.Arrays;
+
+/**
+ * Schedules the expiry of the particles in a ParticleStore when they are added, so removing the dead
+ * particles only has to look at the particles whose lifetime is nearly over, rather than at every
+ * particle in the store.
+ * <p>
+ * The wheel is a ring of slots, each covering RESOLUTION seconds.  A particle is put in the slot of
+ * the time its lifetime ends, so the particles to check at a given time are those in the slots from
+ * the last check up to that time.  The ring covers NUM_SLOTS * RESOLUTION seconds, longer than any
+ * emitter's lifetime.  A particle that lives longer shares a slot with particles due a turn of the
+ * wheel or more earlier, and is simply found alive and left there until the turn it is due.
+ * <p>
+ * The slots hold particle indices.  The store tells the wheel whenever it moves a particle, and the
+ * wheel keeps the slot and the place in the slot of each particle, so moving a particle costs the
+ * same whatever the number of particles.
+ *
+ * @version 1.0
+ */
+class ExpiryWheel {
+
+    /**
+     * The time covered by each slot in seconds.
+     */
+    final static double RESOLUTION = 1.0 / 64;
+    /**
+     * The number of slots in the ring.
+     */
+    final static int NUM_SLOTS = 256;
+
+    private final static int INITIAL_SLOT_CAPACITY = 16;
+    // Particles are put in the slot of a moment before their expiry, so one whose expiry time rounds
+    // up past the start of a slot is still checked in time.
+    private final static double EARLY = 1e-9;    // seconds
+
+    // The particle indices due in each slot, unordered.
+    private final int[][] slots = new int[NUM_SLOTS][INITIAL_SLOT_CAPACITY];
+    private final int[] slotSize = new int[NUM_SLOTS];
+    // The slot of each particle, and its place in the slot, indexed by particle.
+    private int[] slotOf;
+    private int[] placeOf;
+    // The absolute number of the slot up to which the particles have been checked.
+    private long cursor;
+    private boolean started;
+    // The particles found dead by the last collect.
+    private int[] dead = new int[INITIAL_SLOT_CAPACITY];
+    private int numDead;
+    private int firstDead;
+
+    /**
+     * The ExpiryWheel constructor.
+     *
+     * @param capacity The number of particles the store can hold.
+     */
+    ExpiryWheel(int capacity) {
+        slotOf = new int[capacity];
+        placeOf = new int[capacity];
+    }
+
+    /**
+     * Grows the wheel's record of each particle along with the store.
+     *
+     * @param capacity The number of particles the store can hold.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > slotOf.length) {
+            slotOf = Arrays.copyOf(slotOf, capacity);
+            placeOf = Arrays.copyOf(placeOf, capacity);
+        }
+    }
+
+    /**
+     * Schedules the expiry of a particle that has just been added to the store.  A particle that is
+     * already due is put in the first slot still to be checked.
+     *
+     * @param index        The index of the particle.
+     * @param creationTime The absolute time of creation of the particle in seconds.
+     * @param expiryTime   The absolute time at which the particle's lifetime ends in seconds.
+     */
+    void schedule(int index, double creationTime, double expiryTime) {
+        if (!started) {
+            // Start checking from the first particle's creation, before anything can be due.
+            cursor = slotNumber(creationTime);
+            started = true;
+        }
+        put(index, ring(Math.max(slotNumber(expiryTime - EARLY), cursor)));
+    }
+
+    /**
+     * Removes a particle from the wheel, before the store removes it.
+     *
+     * @param index The index of the particle.
+     */
+    void unschedule(int index) {
+        take(slotOf[index], placeOf[index]);
+    }
+
+    /**
+     * Follows a particle that the store has moved.  Whatever particle was at the new index must
+     * already have been removed from the wheel.
+     *
+     * @param from The old index of the particle.
+     * @param to   The new index.
+     */
+    void move(int from, int to) {
+        int slot = slotOf[from];
+        int place = placeOf[from];
+        slotOf[to] = slot;
+        placeOf[to] = place;
+        slots[slot][place] = to;
+    }
+
+    /**
+     * Finds the particles whose lifetime is over at the supplied time, and removes them from the
+     * wheel.  Only the slots from the last call up to the time are looked at.  The dead particles are
+     * then given by getDead, and are still in the store.
+     *
+     * @param time  The absolute time in seconds.
+     * @param store The store the particles are in.
+     * @return The number of dead particles.
+     */
+    int collect(double time, ParticleStore store) {
+        numDead = 0;
+        firstDead = Integer.MAX_VALUE;
+        if (!started) {
+            cursor = slotNumber(time);
+            started = true;
+        }
+        // The slot due now is checked again next time, as more of its particles may die by then.
+        long last = Math.max(slotNumber(time), cursor);
+        for (long number = Math.max(cursor, last - NUM_SLOTS + 1); number <= last; number++)
+            collectSlot(ring(number), last, time, store);
+        cursor = last;
+        return numDead;
+    }
+
+    /**
+     * An accessor for the particles found dead by the last collect, in no particular order.
+     *
+     * @return The indices of the particles, as many of them as collect returned.
+     */
+    int[] getDead() {
+        return dead;
+    }
+
+    /**
+     * An accessor for the lowest index among the particles found dead by the last collect.
+     *
+     * @return The index, or Integer.MAX_VALUE if none were found.
+     */
+    int getFirstDead() {
+        return firstDead;
+    }
+
+    /**
+     * Empties the wheel, ready for a new set of particles.
+     */
+    void clear() {
+        Arrays.fill(slotSize, 0);
+        started = false;
+    }
+
+    // Checks the particles of a slot.  Dead particles are taken out, and particles still alive are
+    // moved on to their own slot if they were put here early, or left here if they belong here.
+    private void collectSlot(int slot, long last, double time, ParticleStore store) {
+        int[] entries = slots[slot];
+        // Work from the end, so a particle moved into a checked place is one already checked.
+        for (int place = slotSize[slot] - 1; place >= 0; place--) {
+            int index = entries[place];
+            if (store.isExpired(index, time)) {
+                take(slot, place);
+                addDead(index);
+            } else {
+                double expiryTime = store.getCreationTime(index) + store.getLifetime(index);
+                int due = ring(Math.max(slotNumber(expiryTime - EARLY), last));
+                if (due != slot) {
+                    take(slot, place);
+                    put(index, due);
+                }
+            }
+        }
+    }
+
+    // Adds a particle to the end of a slot.
+    private void put(int index, int slot) {
+        int size = slotSize[slot];
+        if (size == slots[slot].length)
+            slots[slot] = Arrays.copyOf(slots[slot], size * 2);
+        slots[slot][size] = index;
+        slotOf[index] = slot;
+        placeOf[index] = size;
+        slotSize[slot] = size + 1;
+    }
+
+    // Takes the particle at a place in a slot out, filling the place with the slot's last particle.
+    private void take(int slot, int place) {
+        int last = --slotSize[slot];
+        if (place != last) {
+            int moved = slots[slot][last];
+            slots[slot][place] = moved;
+            placeOf[moved] = place;
+        }
+    }
+
+    // Records a dead particle.
+    private void addDead(int index) {
+        if (numDead == dead.length)
+            dead = Arrays.copyOf(dead, numDead * 2);
+        dead[numDead++] = index;
+        firstDead = Math.min(firstDead, index);
+    }
+
+    // Returns the absolute number of the slot holding a time.
+    private static long slotNumber(double time) {
+        return (long) Math.floor(time / RESOLUTION);
+    }
+
+    // Returns the place in the ring of an absolute slot number.
+    private static int ring(long number) {
+        return (int) Math.floorMod(number, (long) NUM_SLOTS);
+    }
+}
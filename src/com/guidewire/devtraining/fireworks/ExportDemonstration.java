@@ -0,0 +1,85 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+//This class exports every frame of a show as a PNG image, for previewing the show offline.  The show
+//is either a script, which is played with a time step of 1/60 s, or a recording made by
+//ShowDemonstration or HeadlessDemonstration, which is exported without running the physics.  A script
+//is played with the viewport of the images, so particles that leave it for good are retired early.
+//If the script cannot be read to the end, the frames up to there are exported and the exit status is 1.
+//Usage: ExportDemonstration <script or recording file> <output directory> [width pixels]
+//                           [height pixels] [threads] [wind km/h] [seed]
+public class ExportDemonstration {
+
+    private final static String BACKGROUND_IMAGE = "images/background.png";
+    private final static double TIME_STEP = 1.0 / 60;    // seconds
+    private final static String USAGE = "Usage: ExportDemonstration <script or recording file> <output directory> "
+            + "[width pixels] [height pixels] [threads] [wind km/h] [seed]";
+
+    public static void main(String[] args) {
+        // Make sure nothing tries to open a display.
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        int status = 0;
+        try {
+            Path input = Paths.get(args[0]);
+            int width = args.length > 2 ? Integer.parseInt(args[2]) : 1920;
+            int height = args.length > 3 ? Integer.parseInt(args[3]) : 1080;
+            int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            double wind = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+            BufferedImage background =
+                    Utilities.getBufferedImageFromRelativePathToClass(BACKGROUND_IMAGE, ExportDemonstration.class);
+            long startTime = System.nanoTime();
+            FrameExporter exporter = new FrameExporter(Paths.get(args[1]), width, height, threads, background);
+            long retiredCount = 0;
+            Exception scriptError = null;
+            try (exporter) {
+                if (FrameRecording.isRecording(input)) {
+                    try (FrameRecording recording = new FrameRecording(input)) {
+                        exporter.export(recording);
+                    }
+                } else {
+                    try (ShowScriptReader script = new ShowScriptReader(Files.newBufferedReader(input))) {
+                        ShowEngine engine = new ShowEngine(wind);
+                        if (args.length > 6)
+                            engine.setSeed(Long.parseLong(args[6]));
+                        engine.setRecorder(exporter);
+                        engine.setViewport(Viewport.forImage(width, height));
+                        engine.play(script);
+                        double time = 0;
+                        while (!engine.checkIfFinished()) {
+                            time += TIME_STEP;
+                            engine.tick(time);
+                        }
+                        retiredCount = engine.getRetiredCount();
+                        scriptError = engine.getScriptError();
+                    }
+                }
+            }
+            int frameCount = exporter.getFrameCount();
+            double wallTime = (System.nanoTime() - startTime) / 1e9;
+            System.out.printf("Exported %d frames of %d x %d with %d threads in %.3f s (%.1f frames/s)%n",
+                    frameCount, width, height, threads, wallTime, frameCount / wallTime);
+            System.out.printf("Retired %d particles early, and skipped drawing %d off the images%n",
+                    retiredCount, exporter.getCulledCount());
+            if (scriptError != null) {
+                System.out.println("The script stopped early: " + scriptError.getMessage());
+                status = 1;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+        } catch (IOException | ShowScriptException | EnvironmentException e) {
+            System.out.println(e.getMessage());
+            status = 1;
+        }
+        if (status != 0)
+            System.exit(status);
+    }
+}
@@ -18,8 +18,58 @@ public class Firework {
      * @param Vel The velocity component in m/sec.
      */
     public Firework(Point2D.Double Pos, Point2D.Double Vel) {
-        position = Pos;
-        velocity = Vel;
+        // Copy, so the position and velocity can be changed in place by reinitialize.
+        position = (Point2D.Double) Pos.clone();
+        velocity = (Point2D.Double) Vel.clone();
+    }
+
+    /**
+     * Sets the position and velocity in place, without creating new objects.
+     *
+     * @param x  The X position in metres.
+     * @param y  The Y position in metres.
+     * @param vx The X velocity component in m/sec.
+     * @param vy The Y velocity component in m/sec.
+     */
+    protected void reinitialize(double x, double y, double vx, double vy) {
+        position.setLocation(x, y);
+        velocity.setLocation(vx, vy);
+    }
+
+    /**
+     * An accessor for the X position, which does not copy the position.
+     *
+     * @return The X position in metres.
+     */
+    public double getX() {
+        return position.x;
+    }
+
+    /**
+     * An accessor for the Y position, which does not copy the position.
+     *
+     * @return The Y position in metres.
+     */
+    public double getY() {
+        return position.y;
+    }
+
+    /**
+     * An accessor for the X velocity component, which does not copy the velocity.
+     *
+     * @return The X velocity component in m/sec.
+     */
+    public double getVelocityX() {
+        return velocity.x;
+    }
+
+    /**
+     * An accessor for the Y velocity component, which does not copy the velocity.
+     *
+     * @return The Y velocity component in m/sec.
+     */
+    public double getVelocityY() {
+        return velocity.y;
     }
 
     /**
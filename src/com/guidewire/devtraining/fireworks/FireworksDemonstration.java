@@ -1,11 +1,25 @@
 package com.guidewire.devtraining.fireworks;
 //Name: Tate Conlon
 
-//This class runs the Roman Candle Window simulation
+import java.io.IOException;
+import java.nio.file.Paths;
+
+//This class runs the Roman Candle Window simulation, or replays a show recorded by HeadlessDemonstration
+//or ShowDemonstration.
+//Usage: FireworksDemonstration [recording file]
 public class FireworksDemonstration {
 
     public static void main(String[] args) {
-        RomanCandleWindow frame = new RomanCandleWindow();
+        FrameRecording recording = null;
+        if (args.length > 0) {
+            try {
+                recording = new FrameRecording(Paths.get(args[0]));
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+        }
+        RomanCandleWindow frame = new RomanCandleWindow(recording);
         frame.setVisible(true);
     }
 }
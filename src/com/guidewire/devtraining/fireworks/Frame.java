@@ -0,0 +1,303 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compact picture of the particles at one moment, holding only what is needed to draw them: the
+ * position, color, render size and type of each particle.  Frames are filled by the simulation and
+ * handed to the renderer through a FrameBuffer.  Once a reader has a frame, nothing changes it until
+ * the reader gives it back by asking the FrameBuffer for a newer one.
+ * <p>
+ * The particles are held grouped by color, in Palette order, so a renderer can set each color once
+ * and then draw every particle of that color.  Within a color the particles keep their order in the
+ * store.
+ * <p>
+ * A frame also holds the foot and launch angle of each launch tube of the show, since a show script
+ * may point a tube another way for each star, so a frame can be drawn as it was shown without the
+ * show that made it.
+ * <p>
+ * A frame can also be written to and read from a buffer, for a FrameRecorder and a FrameRecording.
+ * Its record holds the time, the size and the start of each color, then the tubes, followed by each
+ * column in turn, so the columns are copied in bulk and the colors are not stored per particle.
+ *
+ * @version 1.4
+ */
+public class Frame {
+
+    private double time;        // seconds
+    private int size;
+    private float[] x = new float[0];            // metre
+    private float[] y = new float[0];            // metre
+    private int[] color = new int[0];
+    private byte[] renderSize = new byte[0];    // pixels
+    private byte[] type = new byte[0];
+    // The index of the first particle of each color, with the frame size at the end.
+    private final int[] colorStart = new int[Palette.size() + 1];
+    // The next free place for each color while the frame is filled.
+    private final int[] colorNext = new int[Palette.size()];
+    private int numTubes;
+    private float[] tubeX = new float[0];        // metre
+    private float[] tubeAngle = new float[0];    // degrees
+
+    /**
+     * Fills the frame from the particles in a store.  Only the FrameBuffer's writer may call this.
+     *
+     * @param store The particles.
+     * @param time  The absolute time of the frame in seconds.
+     */
+    void copyFrom(ParticleStore store, double time) {
+        this.time = time;
+        size = store.size();
+        ensureCapacity(size);
+        // A counting sort: count the particles of each color, then copy each one to its color's group.
+        Arrays.fill(colorStart, 0);
+        for (int i = 0; i < size; i++)
+            colorStart[store.getColor(i) + 1]++;
+        for (int c = 0; c < colorNext.length; c++) {
+            colorStart[c + 1] += colorStart[c];
+            colorNext[c] = colorStart[c];
+        }
+        for (int i = 0; i < size; i++) {
+            int c = store.getColor(i);
+            int j = colorNext[c]++;
+            x[j] = (float) store.getX(i);
+            y[j] = (float) store.getY(i);
+            color[j] = c;
+            renderSize[j] = (byte) store.getRenderSize(i);
+            type[j] = store.getType(i);
+        }
+    }
+
+    /**
+     * Sets the launch tubes of the frame.  Only the FrameBuffer's writer may call this.
+     *
+     * @param numTubes  The number of tubes.
+     * @param tubeX     The X position of the foot of each tube in metres.
+     * @param tubeAngle The launch angle of each tube in degrees off the vertical.
+     */
+    void setTubes(int numTubes, double[] tubeX, double[] tubeAngle) {
+        this.numTubes = numTubes;
+        ensureTubeCapacity(numTubes);
+        for (int i = 0; i < numTubes; i++) {
+            this.tubeX[i] = (float) tubeX[i];
+            this.tubeAngle[i] = (float) tubeAngle[i];
+        }
+    }
+
+    /**
+     * Fills the frame with a copy of another frame, which is already grouped by color, so the
+     * columns are simply copied.
+     *
+     * @param frame The frame to copy.
+     */
+    void copyFrom(Frame frame) {
+        time = frame.time;
+        size = frame.size;
+        ensureCapacity(size);
+        System.arraycopy(frame.x, 0, x, 0, size);
+        System.arraycopy(frame.y, 0, y, 0, size);
+        System.arraycopy(frame.color, 0, color, 0, size);
+        System.arraycopy(frame.renderSize, 0, renderSize, 0, size);
+        System.arraycopy(frame.type, 0, type, 0, size);
+        System.arraycopy(frame.colorStart, 0, colorStart, 0, colorStart.length);
+        numTubes = frame.numTubes;
+        ensureTubeCapacity(numTubes);
+        System.arraycopy(frame.tubeX, 0, tubeX, 0, numTubes);
+        System.arraycopy(frame.tubeAngle, 0, tubeAngle, 0, numTubes);
+    }
+
+    /**
+     * Returns the number of bytes a frame takes up in a buffer.
+     *
+     * @param size     The number of particles.
+     * @param numTubes The number of launch tubes.
+     * @return The size of the record in bytes.
+     */
+    static int getRecordSize(int size, int numTubes) {
+        return Double.BYTES + Integer.BYTES * (2 + Palette.size()) + 2 * Float.BYTES * numTubes
+                + (2 * Float.BYTES + 2) * size;
+    }
+
+    /**
+     * Writes the frame at the position of a buffer, leaving the position after it.
+     *
+     * @param buffer The buffer, which must have getRecordSize(size(), getTubeCount()) bytes remaining.
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.putDouble(time);
+        buffer.putInt(size);
+        for (int c = 0; c < Palette.size(); c++)
+            buffer.putInt(colorStart[c]);
+        buffer.putInt(numTubes);
+        buffer.asFloatBuffer().put(tubeX, 0, numTubes);
+        buffer.position(buffer.position() + Float.BYTES * numTubes);
+        buffer.asFloatBuffer().put(tubeAngle, 0, numTubes);
+        buffer.position(buffer.position() + Float.BYTES * numTubes);
+        buffer.asFloatBuffer().put(x, 0, size);
+        buffer.position(buffer.position() + Float.BYTES * size);
+        buffer.asFloatBuffer().put(y, 0, size);
+        buffer.position(buffer.position() + Float.BYTES * size);
+        buffer.put(type, 0, size);
+        buffer.put(renderSize, 0, size);
+    }
+
+    /**
+     * Fills the frame from a record at the position of a buffer, leaving the position after it.
+     *
+     * @param buffer The buffer, holding a record written by writeTo.
+     */
+    void readFrom(ByteBuffer buffer) {
+        time = buffer.getDouble();
+        size = buffer.getInt();
+        ensureCapacity(size);
+        for (int c = 0; c < Palette.size(); c++)
+            colorStart[c] = buffer.getInt();
+        colorStart[Palette.size()] = size;
+        numTubes = buffer.getInt();
+        ensureTubeCapacity(numTubes);
+        buffer.asFloatBuffer().get(tubeX, 0, numTubes);
+        buffer.position(buffer.position() + Float.BYTES * numTubes);
+        buffer.asFloatBuffer().get(tubeAngle, 0, numTubes);
+        buffer.position(buffer.position() + Float.BYTES * numTubes);
+        buffer.asFloatBuffer().get(x, 0, size);
+        buffer.position(buffer.position() + Float.BYTES * size);
+        buffer.asFloatBuffer().get(y, 0, size);
+        buffer.position(buffer.position() + Float.BYTES * size);
+        buffer.get(type, 0, size);
+        buffer.get(renderSize, 0, size);
+        for (int c = 0; c < Palette.size(); c++)
+            Arrays.fill(color, colorStart[c], colorStart[c + 1], c);
+    }
+
+    /**
+     * An accessor for the time of the frame.
+     *
+     * @return The absolute time in seconds.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * An accessor for the number of particles in the frame.
+     *
+     * @return The number of particles.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    /**
+     * An accessor for the particle color.
+     *
+     * @param index The index of the particle.
+     * @return The Palette index of the color.
+     */
+    public int getColor(int index) {
+        return color[index];
+    }
+
+    /**
+     * Returns the index of the first particle of a color.  The particles of the color run up to,
+     * but not including, getColorEnd.
+     *
+     * @param color The Palette index of the color.
+     * @return The index of the first particle of the color.
+     */
+    public int getColorStart(int color) {
+        return colorStart[color];
+    }
+
+    /**
+     * Returns the index after the last particle of a color.
+     *
+     * @param color The Palette index of the color.
+     * @return One more than the index of the last particle of the color.
+     */
+    public int getColorEnd(int color) {
+        return colorStart[color + 1];
+    }
+
+    /**
+     * Return the render size of a particle.
+     *
+     * @param index The index of the particle.
+     * @return The render size in pixels.
+     */
+    public int getRenderSize(int index) {
+        return renderSize[index];
+    }
+
+    /**
+     * An accessor for the particle type.
+     *
+     * @param index The index of the particle.
+     * @return ParticleStore.STAR, SPARK or LAUNCH_SPARK.
+     */
+    public byte getType(int index) {
+        return type[index];
+    }
+
+    /**
+     * An accessor for the number of launch tubes in the frame.
+     *
+     * @return The number of tubes, which is 0 for a frame read from a recording without them.
+     */
+    public int getTubeCount() {
+        return numTubes;
+    }
+
+    /**
+     * An accessor for the position of a launch tube.
+     *
+     * @param tube The index of the tube.
+     * @return The X position of the foot of the tube in metres.
+     */
+    public float getTubeX(int tube) {
+        return tubeX[tube];
+    }
+
+    /**
+     * An accessor for the launch angle of a launch tube.
+     *
+     * @param tube The index of the tube.
+     * @return The launch angle in degrees off the vertical.
+     */
+    public float getTubeAngle(int tube) {
+        return tubeAngle[tube];
+    }
+
+    // Grows the tube arrays so they can hold at least the given number of tubes.
+    private void ensureTubeCapacity(int capacity) {
+        if (capacity <= tubeX.length)
+            return;
+        int newCapacity = Math.max(capacity, tubeX.length * 2);
+        tubeX = Arrays.copyOf(tubeX, newCapacity);
+        tubeAngle = Arrays.copyOf(tubeAngle, newCapacity);
+    }
+
+    // Grows the arrays so they can hold at least the given number of particles.
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length)
+            return;
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        color = Arrays.copyOf(color, newCapacity);
+        renderSize = Arrays.copyOf(renderSize, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+    }
+}
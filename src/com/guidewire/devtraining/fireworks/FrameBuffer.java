@@ -0,0 +1,86 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands frames from the simulation to the renderer without locks and without copying, using three
+ * frames.  The writer always owns one frame and the reader another, and the third holds the most
+ * recently published frame.  Publishing swaps the writer's frame with the third one, and acquiring
+ * swaps the reader's frame with it if something new has been published since.  Neither side ever
+ * waits for the other, and a frame is never written while it is being read.
+ * <p>
+ * There must be only one writer thread and one reader thread, although they may be the same thread.
+ *
+ * @version 1.2
+ */
+public class FrameBuffer {
+
+    // The bit set in the shared slot when it holds a frame the reader has not seen yet.
+    private final static int FRESH = 4;
+    private final static int INDEX_MASK = 3;
+
+    private final Frame[] frames = {new Frame(), new Frame(), new Frame()};
+    // The index of the frame in the shared slot, plus the FRESH bit.
+    private final AtomicInteger shared = new AtomicInteger(1);
+    private int writing = 0;
+    private int reading = 2;
+
+    /**
+     * Fills the writer's frame from a particle store, with no launch tubes, and publishes it as the
+     * latest frame.  Only the writer thread may call this.
+     *
+     * @param store The particles.
+     * @param time  The absolute time of the frame in seconds.
+     * @return The frame just published, which the writer may go on reading, but not change, until
+     * it next publishes.
+     */
+    public Frame publish(ParticleStore store, double time) {
+        return publish(store, time, 0, null, null);
+    }
+
+    /**
+     * Fills the writer's frame from a particle store and the launch tubes of the show, and publishes
+     * it as the latest frame.  Only the writer thread may call this.
+     *
+     * @param store     The particles.
+     * @param time      The absolute time of the frame in seconds.
+     * @param numTubes  The number of tubes.
+     * @param tubeX     The X position of the foot of each tube in metres.
+     * @param tubeAngle The launch angle of each tube in degrees off the vertical.
+     * @return The frame just published, which the writer may go on reading, but not change, until
+     * it next publishes.
+     */
+    public Frame publish(ParticleStore store, double time, int numTubes, double[] tubeX, double[] tubeAngle) {
+        Frame frame = frames[writing];
+        frame.copyFrom(store, time);
+        frame.setTubes(numTubes, tubeX, tubeAngle);
+        writing = shared.getAndSet(writing | FRESH) & INDEX_MASK;
+        return frame;
+    }
+
+    /**
+     * Fills the writer's frame from a recording and publishes it as the latest frame, for replaying a
+     * show.  Only the writer thread may call this.
+     *
+     * @param recording The recording.
+     * @param index     The index of the frame in the recording.
+     * @throws IOException If the frame cannot be read.
+     */
+    public void publish(FrameRecording recording, int index) throws IOException {
+        recording.read(index, frames[writing]);
+        writing = shared.getAndSet(writing | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Returns the latest published frame.  The frame stays unchanged until the next call, when it is
+     * handed back to the writer.  Only the reader thread may call this.
+     *
+     * @return The latest frame, which is empty if nothing has been published yet.
+     */
+    public Frame acquire() {
+        if ((shared.get() & FRESH) != 0)
+            reading = shared.getAndSet(reading) & INDEX_MASK;
+        return frames[reading];
+    }
+}
@@ -0,0 +1,230 @@
+package com.guidewire.devtraining.fireworks;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exports every frame of a show as a numbered PNG image at full resolution, as fast as the frames can
+ * be drawn rather than at the 60 frames per second of the window.  The simulation copies each frame
+ * into a Frame, and a pool of worker threads renders and encodes the frames in parallel, each worker
+ * with its own FrameRenderer and so its own images.  Each image shows the launch tubes as the frame
+ * holds them.
+ * <p>
+ * A fixed number of frames is shared between the simulation and the workers through two bounded
+ * queues: the simulation takes a free frame, fills it and queues it for the workers, and a worker
+ * gives the frame back once its image is written.  The simulation waits when every frame is in use,
+ * so memory stays the same however long the show is.
+ * <p>
+ * The images are written to frame000000.png, frame000001.png and so on, in the order the frames are
+ * given.  The first error a worker meets is thrown by the next call to record and by close.
+ *
+ * @version 1.3
+ */
+public class FrameExporter implements FrameSink, Closeable {
+
+    // The frames in use per worker: one being rendered, and one waiting, so a worker never waits for the simulation.
+    private final static int FRAMES_PER_WORKER = 2;
+    private final static String FILE_FORMAT = "frame%06d.png";
+    // Tells a worker to stop.
+    private final static Job STOP = new Job(null);
+
+    private final Path directory;
+    private final int width;        // pixels
+    private final int height;       // pixels
+    private final Image background;
+    private final BlockingQueue<Job> free;
+    private final BlockingQueue<Job> queued;
+    private final Thread[] workers;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final AtomicLong culledCount = new AtomicLong();
+    private int frameCount;
+    private boolean closed;
+
+    /**
+     * The FrameExporter constructor.  The workers are started straight away.
+     *
+     * @param directory  The directory the images are written to, which is created if need be.
+     * @param width      The width of the images in pixels.
+     * @param height     The height of the images in pixels.
+     * @param threads    The number of worker threads.
+     * @param background The image drawn behind the particles, scaled to the image size.
+     * @throws IOException If the directory cannot be created.
+     */
+    public FrameExporter(Path directory, int width, int height, int threads, Image background) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Image size out of range: " + width + " x " + height);
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads out of range: " + threads);
+        this.directory = Files.createDirectories(directory);
+        this.width = width;
+        this.height = height;
+        this.background = background;
+        int numFrames = threads * FRAMES_PER_WORKER;
+        free = new ArrayBlockingQueue<>(numFrames);
+        queued = new ArrayBlockingQueue<>(numFrames + threads);
+        for (int i = 0; i < numFrames; i++)
+            free.add(new Job(new Frame()));
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::work, "Fireworks export " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues a copy of a frame as the next image, waiting for a free frame if need be.
+     *
+     * @param frame The frame.
+     * @throws IOException If an earlier image could not be written, or the wait is interrupted.
+     */
+    public void record(Frame frame) throws IOException {
+        Job job = takeFree();
+        job.frame.copyFrom(frame);
+        submit(job);
+    }
+
+    /**
+     * Queues every frame of a recording as images, in order.
+     *
+     * @param recording The recording.
+     * @throws IOException If the recording cannot be read, an image could not be written, or the
+     *                     wait is interrupted.
+     */
+    public void export(FrameRecording recording) throws IOException {
+        for (int i = 0; i < recording.getFrameCount(); i++) {
+            Job job = takeFree();
+            try {
+                recording.read(i, job.frame);
+            } catch (IOException e) {
+                free.add(job);
+                throw e;
+            }
+            submit(job);
+        }
+    }
+
+    /**
+     * An accessor for the number of frames queued so far.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * An accessor for the number of particles the workers skipped because they were off the image.
+     * The count is complete once the exporter is closed.
+     *
+     * @return The number of particles.
+     */
+    public long getCulledCount() {
+        return culledCount.get();
+    }
+
+    /**
+     * Waits for the queued images to be written and stops the workers.
+     *
+     * @throws IOException If an image could not be written, or the wait is interrupted.
+     */
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            for (Thread worker : workers)
+                queued.put(STOP);
+            for (Thread worker : workers)
+                worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing images");
+        }
+        checkFailure();
+    }
+
+    // Takes a free frame, once one has been written, after checking the workers are still well.
+    private Job takeFree() throws IOException {
+        if (closed)
+            throw new IOException("Exporter is closed");
+        checkFailure();
+        try {
+            return free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a frame");
+        }
+    }
+
+    // Numbers a filled frame and queues it for the workers.  There is always room, as the queue
+    // holds more jobs than there are.
+    private void submit(Job job) {
+        job.number = frameCount++;
+        queued.add(job);
+    }
+
+    // Throws the first error a worker met, if any.
+    private void checkFailure() throws IOException {
+        Exception e = failure.get();
+        if (e instanceof IOException)
+            throw (IOException) e;
+        if (e != null)
+            throw new IOException("Could not write image: " + e.getMessage(), e);
+    }
+
+    // The body of a worker: renders and writes queued frames until told to stop.  After an error
+    // the frames are only given back, so the simulation is never left waiting.
+    private void work() {
+        FrameRenderer renderer = new FrameRenderer(background);
+        try {
+            while (true) {
+                Job job = queued.take();
+                if (job == STOP)
+                    return;
+                try {
+                    if (failure.get() == null)
+                        write(renderer, job);
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    free.add(job);
+                }
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new InterruptedIOException("Export worker interrupted"));
+        } finally {
+            renderer.dispose();
+        }
+    }
+
+    // Renders a frame and writes it as a PNG image.
+    private void write(FrameRenderer renderer, Job job) throws IOException {
+        BufferedImage image = renderer.render(job.frame, width, height, height);
+        culledCount.addAndGet(renderer.getLastCulled());
+        Path file = directory.resolve(String.format(FILE_FORMAT, job.number));
+        if (!ImageIO.write(image, "png", file.toFile()))
+            throw new IOException("No PNG writer available");
+    }
+
+    // A frame and the number of the image it is written to.
+    private static class Job {
+
+        private final Frame frame;
+        private int number;
+
+        private Job(Frame frame) {
+            this.frame = frame;
+        }
+    }
+}
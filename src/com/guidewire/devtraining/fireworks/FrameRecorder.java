@@ -0,0 +1,144 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Records a show, one frame per tick, to a binary file that a FrameRecording can replay without
+ * running the physics again.  The frames are written through a memory-mapped region of the file,
+ * which is moved along the file as it fills, so recording copies each frame once and makes no
+ * system call for most frames.
+ * <p>
+ * The file starts with a header, followed by the frame records in time order.  When the recorder is
+ * closed, an index giving the file offset and time of every frame is written after the last frame
+ * and the header is completed, so a recording that was not closed cannot be replayed.  All numbers
+ * are little-endian.
+ * <p>
+ * The index and header are written through the file channel rather than the mapped region, which is
+ * flushed and let go first.  Java has no way to unmap a region straight away, and some systems will
+ * not shorten a file that is still mapped, so the file is trimmed to its length only where the system
+ * allows it.  Any bytes left after the index are never read.
+ *
+ * @version 1.3
+ */
+public class FrameRecorder implements FrameSink, Closeable {
+
+    // "FWRC" in ASCII.
+    final static int MAGIC = 0x46575243;
+    // Version 2 added the launch tubes to each frame.
+    final static int VERSION = 2;
+    // The magic number, version, palette size and frame count, the offset of the index, and padding.
+    final static int HEADER_SIZE = 32;
+    // The size of the region of the file mapped at a time, unless a frame is bigger.
+    private final static long REGION_SIZE = 64L << 20;    // bytes
+
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    // The offset in the file of the next frame.
+    private long position = HEADER_SIZE;
+    private int frameCount;
+    private long[] offsets = new long[1024];
+    private double[] times = new double[1024];    // seconds
+
+    /**
+     * The FrameRecorder constructor.  Any existing file is replaced.
+     *
+     * @param path The file to record to.
+     * @throws IOException If the file cannot be opened.
+     */
+    public FrameRecorder(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Records a frame as the next frame.
+     *
+     * @param frame The frame, whose time may not be before that of the last frame recorded.
+     * @throws IOException If the file cannot be extended.
+     */
+    public void record(Frame frame) throws IOException {
+        if (frameCount > 0 && frame.getTime() < times[frameCount - 1])
+            throw new IllegalArgumentException("Frames must be recorded in time order: " + frame.getTime());
+        int length = Frame.getRecordSize(frame.size(), frame.getTubeCount());
+        reserve(length);
+        frame.writeTo(region);
+        if (frameCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, frameCount * 2);
+            times = Arrays.copyOf(times, frameCount * 2);
+        }
+        offsets[frameCount] = position;
+        times[frameCount] = frame.getTime();
+        frameCount++;
+        position += length;
+    }
+
+    /**
+     * An accessor for the number of frames recorded so far.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Writes the frame index and the header, trims the file to its length where the system allows it
+     * and closes it.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void close() throws IOException {
+        try {
+            if (region != null) {
+                region.force();
+                region = null;
+            }
+            long indexOffset = position;
+            ByteBuffer index = ByteBuffer.allocate((Long.BYTES + Double.BYTES) * frameCount)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            index.asLongBuffer().put(offsets, 0, frameCount);
+            index.position(Long.BYTES * frameCount);
+            index.asDoubleBuffer().put(times, 0, frameCount);
+            index.rewind();
+            write(index, indexOffset);
+            position += index.capacity();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(Palette.size()).putInt(frameCount).putLong(indexOffset);
+            header.rewind();
+            write(header, 0);
+            try {
+                channel.truncate(position);
+            } catch (IOException e) {
+                // The last region is still mapped, and this system will not shorten a mapped file.
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Writes the whole of a buffer through the channel at the given offset in the file.
+    private void write(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining())
+            offset += channel.write(buffer, offset);
+    }
+
+    // Makes sure the mapped region covers the given number of bytes from the current position, and
+    // moves the region's position there.
+    private void reserve(int length) throws IOException {
+        if (region == null || position + length > regionStart + region.capacity()) {
+            regionStart = position;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(REGION_SIZE, length));
+            region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        region.position((int) (position - regionStart));
+    }
+}
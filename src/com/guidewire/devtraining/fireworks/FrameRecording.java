@@ -0,0 +1,175 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A show recorded by a FrameRecorder, for replaying without the physics.  The file is memory-mapped,
+ * so a frame is read straight from the page cache into a Frame, and only the part of the file around
+ * the frame being read is mapped at a time, so recordings of any length can be replayed.
+ * <p>
+ * The frame index at the end of the file gives the offset of every frame, so any frame is found in
+ * constant time.  Finding the frame at a time starts from where the time falls between the first and
+ * last frames, so it takes constant time too when, as in a recorded show, the frames are evenly
+ * spaced.
+ * <p>
+ * Only recordings of the current FrameRecorder version are read; older ones must be recorded again.
+ * <p>
+ * A FrameRecording is used by one thread at a time.
+ *
+ * @version 1.3
+ */
+public class FrameRecording implements Closeable {
+
+    // The size of the region of the file mapped at a time, unless a frame is bigger.
+    private final static long WINDOW_SIZE = 256L << 20;    // bytes
+
+    private final FileChannel channel;
+    private final int frameCount;
+    private final long indexOffset;
+    private final LongBuffer offsets;
+    private final DoubleBuffer times;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * The FrameRecording constructor.
+     *
+     * @param path The file written by a FrameRecorder.
+     * @throws IOException If the file cannot be read, or is not a complete recording.
+     */
+    public FrameRecording(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FrameRecorder.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < FrameRecorder.HEADER_SIZE || header.getInt() != FrameRecorder.MAGIC)
+                throw new IOException("Not a frame recording: " + path);
+            if (header.getInt() != FrameRecorder.VERSION || header.getInt() != Palette.size())
+                throw new IOException("Unsupported frame recording: " + path);
+            frameCount = header.getInt();
+            indexOffset = header.getLong();
+            if (indexOffset < FrameRecorder.HEADER_SIZE)
+                throw new IOException("Recording was not finished: " + path);
+            offsets = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) Long.BYTES * frameCount)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            times = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset + (long) Long.BYTES * frameCount,
+                    (long) Double.BYTES * frameCount).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tells whether a file starts like a frame recording, without checking the rest of it.
+     *
+     * @param path The file.
+     * @return True if the file starts with the recording's magic number.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isRecording(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            file.read(magic, 0);
+            magic.flip();
+            return magic.remaining() == Integer.BYTES && magic.getInt() == FrameRecorder.MAGIC;
+        }
+    }
+
+    /**
+     * An accessor for the number of frames in the recording.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * An accessor for the time of a frame.
+     *
+     * @param index The index of the frame.
+     * @return The absolute time of the frame in seconds.
+     */
+    public double getTime(int index) {
+        return times.get(index);
+    }
+
+    /**
+     * An accessor for the time of the first frame.
+     *
+     * @return The absolute time in seconds, or 0 if there are no frames.
+     */
+    public double getStartTime() {
+        return frameCount == 0 ? 0 : times.get(0);
+    }
+
+    /**
+     * An accessor for the time of the last frame.
+     *
+     * @return The absolute time in seconds, or 0 if there are no frames.
+     */
+    public double getEndTime() {
+        return frameCount == 0 ? 0 : times.get(frameCount - 1);
+    }
+
+    /**
+     * Returns the frame showing the given time: the last frame at or before it, or the first frame
+     * if the time is before the recording starts.
+     *
+     * @param time The absolute time in seconds.
+     * @return The index of the frame, or -1 if there are no frames.
+     */
+    public int indexOf(double time) {
+        if (frameCount == 0)
+            return -1;
+        double start = times.get(0);
+        double end = times.get(frameCount - 1);
+        if (!(time > start))
+            return 0;
+        if (time >= end)
+            return frameCount - 1;
+        // Guess from where the time falls, then step to the right frame.
+        int index = (int) ((time - start) / (end - start) * (frameCount - 1));
+        while (index < frameCount - 1 && times.get(index + 1) <= time)
+            index++;
+        while (index > 0 && times.get(index) > time)
+            index--;
+        return index;
+    }
+
+    /**
+     * Reads a frame of the recording.
+     *
+     * @param index The index of the frame.
+     * @param frame The frame to fill.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public void read(int index, Frame frame) throws IOException {
+        long offset = offsets.get(index);
+        long length = (index + 1 < frameCount ? offsets.get(index + 1) : indexOffset) - offset;
+        if (window == null || offset < windowStart || offset + length > windowStart + window.capacity()) {
+            windowStart = offset;
+            long size = Math.min(Math.max(WINDOW_SIZE, length), indexOffset - offset);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        window.position((int) (offset - windowStart));
+        frame.readFrom(window);
+    }
+
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,295 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Draws one frame of the animation, layer by layer: the background, the launch tubes and then the
+ * particles.  The drawing does not depend on a window, so frames can also be rendered off screen.
+ * The tubes are either the single tube of the window, at the angle it is set to, or the tubes the
+ * frame holds, which are those of the show as it was recorded.
+ * <p>
+ * The renderer draws into two images in turn, which are only created again when the frame size
+ * changes.  The background is scaled, and the launch tubes drawn over it, only when the size or the
+ * tubes change, and the result is copied to each frame.  Graphics2D.fillOval creates a shape
+ * every time it is called, so sparks are drawn as small squares and stars are copied from a circle
+ * drawn once per color.  Rendering a frame therefore allocates nothing, however many particles it holds.
+ * <p>
+ * Frames hold their particles grouped by color, so the drawing color is set once per palette color
+ * rather than once per particle.
+ * <p>
+ * A particle none of whose pixels fall on the image is skipped before anything is drawn.  The number
+ * skipped is counted, for the last frame and in total, to show how much drawing is saved.
+ *
+ * @version 1.4
+ */
+public class FrameRenderer {
+
+    private final static int LAUNCH_TUBE_CONVERT = 22;
+    // The largest render size of any particle.
+    private final static int MAX_RENDER_SIZE = 6;    // pixels
+
+    private final Image background;
+    private final BufferedImage[] images = new BufferedImage[2];
+    private final Graphics2D[] graphics = new Graphics2D[2];
+    private int current;
+    // The scaled background with the launch tubes drawn on it.
+    private BufferedImage backdrop;
+    private Graphics2D backdropGraphic;
+    private int backdropPanelHeight;    // pixels
+    private int backdropTubes;
+    private double[] backdropTubeX = new double[1];        // metre
+    private double[] backdropTubeAngle = new double[1];    // degrees
+    // The tubes to draw on the current frame.
+    private double[] tubeX = new double[1];        // metre
+    private double[] tubeAngle = new double[1];    // degrees
+    private int endX;                    // pixels
+    // The Color object for each palette index.
+    private final Color[] colors = new Color[Palette.size()];
+    // A circle for each color, indexed by palette index.
+    private final BufferedImage[] starSprites = new BufferedImage[Palette.size()];
+    private BufferedImage image;
+    private Graphics2D graphic;
+    private Frame frame;
+    private int lastCulled;
+    private long culledTotal;
+
+    /**
+     * The FrameRenderer constructor.
+     *
+     * @param background The image drawn behind everything else, scaled to the frame size.
+     */
+    public FrameRenderer(Image background) {
+        this.background = background;
+        for (int c = 0; c < colors.length; c++)
+            colors[c] = new Color(Palette.getArgb(c), true);
+    }
+
+    /**
+     * Renders a frame with a single launch tube in the middle.  The returned image stays unchanged
+     * until the next call but one, so it can be shown while the next frame is drawn.
+     *
+     * @param frame       The particles to draw, or null if there are none.
+     * @param width       width of the frame
+     * @param height      height of the frame
+     * @param panelHeight height of the panel the frame is shown in, which sets the length of the launch tube
+     * @param launchAngle The launch angle of the tube in degrees off the vertical.
+     * @return The rendered frame.
+     */
+    public BufferedImage render(Frame frame, int width, int height, int panelHeight, double launchAngle) {
+        tubeX[0] = 0;
+        tubeAngle[0] = launchAngle;
+        return render(frame, width, height, panelHeight, 1);
+    }
+
+    /**
+     * Renders a frame with the launch tubes it holds.  The returned image stays unchanged until the
+     * next call but one, so it can be shown while the next frame is drawn.
+     *
+     * @param frame       The particles and tubes to draw, or null if there are none.
+     * @param width       width of the frame
+     * @param height      height of the frame
+     * @param panelHeight height of the panel the frame is shown in, which sets the length of the launch tubes
+     * @return The rendered frame.
+     */
+    public BufferedImage render(Frame frame, int width, int height, int panelHeight) {
+        int numTubes = frame != null ? frame.getTubeCount() : 0;
+        if (numTubes > tubeX.length) {
+            tubeX = new double[numTubes];
+            tubeAngle = new double[numTubes];
+        }
+        for (int i = 0; i < numTubes; i++) {
+            tubeX[i] = frame.getTubeX(i);
+            tubeAngle[i] = frame.getTubeAngle(i);
+        }
+        return render(frame, width, height, panelHeight, numTubes);
+    }
+
+    // Renders a frame with the first numTubes tubes of tubeX and tubeAngle.
+    private BufferedImage render(Frame frame, int width, int height, int panelHeight, int numTubes) {
+        this.frame = frame;
+        ensureImages(width, height);
+        ensureBackdrop(width, height, panelHeight, numTubes);
+        current = 1 - current;
+        image = images[current];
+        graphic = graphics[current];
+        graphic.drawImage(backdrop, 0, 0, null);    //Draw background and LaunchTube
+        int culled = 0;
+        if (frame != null && !frame.isEmpty()) {
+            // Scale from metres to pixels.  The height of the display is always 22m.
+            double convert = height / 22.0;    //px/m
+            double centreX = width / 2.0;
+            // A particle is off the image if it is further than its size past an edge.
+            int minX = -MAX_RENDER_SIZE - Math.max(endX, 0);
+            int maxX = width + MAX_RENDER_SIZE - Math.min(endX, 0);
+            int minY = -MAX_RENDER_SIZE;
+            int maxY = height + MAX_RENDER_SIZE;
+            for (int c = 0; c < colors.length; c++) {
+                int end = frame.getColorEnd(c);
+                int start = frame.getColorStart(c);
+                if (start == end)
+                    continue;
+                graphic.setColor(colors[c]);
+                for (int i = start; i < end; i++) {
+                    int posX = (int) (frame.getX(i) * convert + centreX);
+                    int posY = (int) (height - frame.getY(i) * convert);
+                    if (posX < minX || posX > maxX || posY < minY || posY > maxY) {
+                        culled++;
+                        continue;
+                    }
+                    if (frame.getType(i) == ParticleStore.LAUNCH_SPARK) {
+                        drawLaunchSpark(posX, posY, i);
+                    } else {
+                        drawStar(posX, posY, endX, i);
+                    }
+                }
+            }
+        }
+        lastCulled = culled;
+        culledTotal += culled;
+        return image;
+    }
+
+    /**
+     * An accessor for the number of particles skipped by the last render because they were off the image.
+     *
+     * @return The number of particles.
+     */
+    public int getLastCulled() {
+        return lastCulled;
+    }
+
+    /**
+     * An accessor for the number of particles skipped because they were off the image, over every
+     * frame rendered so far.
+     *
+     * @return The number of particles.
+     */
+    public long getCulledTotal() {
+        return culledTotal;
+    }
+
+    /**
+     * Disposes of the graphics and flushes the images.  The renderer may still be used afterwards,
+     * and will create them again.
+     */
+    public void dispose() {
+        for (int i = 0; i < images.length; i++) {
+            if (graphics[i] != null)
+                graphics[i].dispose();
+            if (images[i] != null)
+                images[i].flush();
+            graphics[i] = null;
+            images[i] = null;
+        }
+        if (backdropGraphic != null)
+            backdropGraphic.dispose();
+        backdropGraphic = null;
+        backdrop = null;
+    }
+
+    // Creates the two images, and the backdrop, if the frame size has changed.
+    private void ensureImages(int width, int height) {
+        if (images[0] != null && images[0].getWidth() == width && images[0].getHeight() == height)
+            return;
+        dispose();
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            graphics[i] = images[i].createGraphics();
+        }
+        backdrop = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        backdropGraphic = backdrop.createGraphics();
+        backdropPanelHeight = -1;
+    }
+
+    // Draws the background and the launch tubes again if the tubes have changed.  The particles are
+    // offset by the tip of a single tube, as the window has always drawn them, but not by the tips
+    // of a show's tubes.
+    private void ensureBackdrop(int width, int height, int panelHeight, int numTubes) {
+        if (backdropPanelHeight == panelHeight && backdropTubes == numTubes
+                && Arrays.equals(backdropTubeX, 0, numTubes, tubeX, 0, numTubes)
+                && Arrays.equals(backdropTubeAngle, 0, numTubes, tubeAngle, 0, numTubes))
+            return;
+        graphic = backdropGraphic;
+        graphic.drawImage(background, 0, 0, width, height, null);    //Draw background
+        endX = 0;
+        for (int i = 0; i < numTubes; i++) {
+            int tipX = drawLaunchTube(width, height, panelHeight, tubeX[i], tubeAngle[i]);    //Draw LaunchTube
+            if (numTubes == 1)
+                endX = tipX;
+        }
+        if (backdropTubeX.length < numTubes) {
+            backdropTubeX = new double[tubeX.length];
+            backdropTubeAngle = new double[tubeX.length];
+        }
+        System.arraycopy(tubeX, 0, backdropTubeX, 0, numTubes);
+        System.arraycopy(tubeAngle, 0, backdropTubeAngle, 0, numTubes);
+        backdropPanelHeight = panelHeight;
+        backdropTubes = numTubes;
+    }
+
+    /**
+     * Draw a star as an circle based on its size and color, at a position already scaled to pixels,
+     * as well as having an offset for the star to line it up with the launch tube's
+     * tip (endX) upon launch.  The graphics must already be set to the star's color.
+     *
+     * @param posX  starting x
+     * @param posY  starting y
+     * @param endX  ending x
+     * @param index index of the particle to draw
+     */
+    private void drawStar(int posX, int posY, int endX, int index) {
+        int size = frame.getRenderSize(index);
+        if (size <= 2) {
+            // A circle this small is a square anyway.
+            graphic.fillRect(posX - size / 2 + endX, posY - size / 2, size, size);
+        } else {
+            graphic.drawImage(getStarSprite(frame.getColor(index), size), posX - size / 2 + endX, posY - size / 2, null);
+        }
+    }
+
+    // Returns a circle of the given color and size, drawing it the first time it is needed.
+    private BufferedImage getStarSprite(int color, int size) {
+        BufferedImage sprite = starSprites[color];
+        if (sprite == null || sprite.getWidth() != size) {
+            sprite = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = sprite.createGraphics();
+            g.setColor(colors[color]);
+            g.fillOval(0, 0, size, size);
+            g.dispose();
+            starSprites[color] = sprite;
+        }
+        return sprite;
+    }
+
+    /**
+     * Draw the launchTube as a series of 10 lines stacked side by side with a gradient.
+     * Multiple lines are used as it is easier to draw a line on a slant than a rectangle.
+     * Returns the tip of the launch tube's x position in pixels.
+     *
+     * @param width       width of the display
+     * @param height      height of the display
+     * @param panelHeight height of the panel the display is shown in
+     * @param tubeX       position of the foot of the tube in metres
+     * @param launchAngle launch angle of the tube in degrees
+     * @return tip of the launch tube's position in pixels, relative to its foot
+     */
+    private int drawLaunchTube(int width, int height, int panelHeight, double tubeX, double launchAngle) {
+        int size = panelHeight / LAUNCH_TUBE_CONVERT;
+        int posY = (int) (size * Math.cos(Math.toRadians(launchAngle)));
+        int posX = (int) (size * Math.sin(Math.toRadians(launchAngle)));
+        int footX = (int) (width / 2.0 + tubeX * height / 22.0);
+        graphic.setPaint(new GradientPaint(0, height - size, Color.BLUE, 0, height, Color.GREEN));
+        for (int i = 0; i < 10; i++) {
+            graphic.drawLine(footX - 5 + i, height, footX + posX - 5 + i, height - posY);
+        }
+        return posX;
+    }
+
+    //Draws a launch spark as a line in the current color
+    private void drawLaunchSpark(int posX, int posY, int index) {
+        int size = frame.getRenderSize(index);
+        graphic.drawLine(posX, posY, posX + size, posY + size);
+    }
+}
@@ -0,0 +1,22 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.IOException;
+
+/**
+ * Receives each frame a show publishes, for example to record it to a file or to export it as an
+ * image.  The sink is given the frame the show has just published, so the particles are only
+ * gathered into a frame once.  The frame may be handed to the painter too, so a sink must only read
+ * it, and only during the call, copying whatever it keeps.
+ *
+ * @version 1.1
+ */
+public interface FrameSink {
+
+    /**
+     * Takes a frame.
+     *
+     * @param frame The frame, which must not be changed.
+     * @throws IOException If the frame cannot be written.
+     */
+    void record(Frame frame) throws IOException;
+}
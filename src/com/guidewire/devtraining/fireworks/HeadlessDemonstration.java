@@ -0,0 +1,48 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+//This class runs the Roman Candle simulation without a window, as fast as possible, and reports how
+//fast the physics ran.
+//Usage: HeadlessDemonstration [wind km/h] [launch angle degrees] [number of stars] [max time seconds]
+//                             [time step seconds] [solver] [spark solver] [seed] [recording file]
+//Solvers: runge_kutta, dormand_prince, semi_implicit_euler or exact_drag.  The spark solver moves the
+//sparks and launch sparks, and defaults to the solver.  Given a recording file, every tick is recorded
+//to it for FireworksDemonstration to replay.
+public class HeadlessDemonstration {
+
+    public static void main(String[] args) {
+        // Make sure nothing tries to open a display.
+        System.setProperty("java.awt.headless", "true");
+        try {
+            double wind = args.length > 0 ? Double.parseDouble(args[0]) : 0;
+            double launchAngle = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+            int numStars = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+            double maxTime = args.length > 3 ? Double.parseDouble(args[3]) : Double.MAX_VALUE;
+            HeadlessSimulation simulation = new HeadlessSimulation(wind, launchAngle, numStars);
+            if (args.length > 4)
+                simulation.setTimeStep(Double.parseDouble(args[4]));
+            if (args.length > 5)
+                simulation.setSolver(Solver.valueOf(args[5].toUpperCase()));
+            if (args.length > 6) {
+                Solver sparkSolver = Solver.valueOf(args[6].toUpperCase());
+                simulation.setSolver(ParticleStore.SPARK, sparkSolver);
+                simulation.setSolver(ParticleStore.LAUNCH_SPARK, sparkSolver);
+            }
+            if (args.length > 7)
+                simulation.setSeed(Long.parseLong(args[7]));
+            try (FrameRecorder recorder = args.length > 8 ? new FrameRecorder(Paths.get(args[8])) : null) {
+                simulation.setRecorder(recorder);
+                simulation.run(maxTime);
+            }
+            System.out.println(simulation);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Usage: HeadlessDemonstration [wind km/h] [launch angle degrees] "
+                    + "[number of stars] [max time seconds] [time step seconds] "
+                    + "[solver] [spark solver] [seed] [recording file]");
+        } catch (EnvironmentException | EmitterException | IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * Runs a ParticleManager without a window.  Instead of following the wall clock, the simulation is
+ * stepped by a fixed time interval as fast as the CPU allows, which is useful for running shows on a
+ * server and for measuring the cost of the physics apart from rendering.
+ *
+ * @version 1.4
+ */
+public class HeadlessSimulation {
+
+    private final ParticleManager manager;
+    private double timeStep = 1.0 / 60;        // seconds
+    private double simulatedTime;            // seconds
+    private long wallTime;                    // nanoseconds
+    private long ticks;
+    private int peakParticleCount;
+    private boolean recording;
+
+    /**
+     * The HeadlessSimulation constructor.
+     *
+     * @param windVelocity The wind velocity in km/hour.
+     * @param launchAngle  The launch angle of the Roman candle in degrees off the vertical.
+     * @param numStars     The number of stars to launch.
+     * @throws EnvironmentException If the wind velocity is not between -20 and 20.
+     * @throws EmitterException     If the launch angle is not between -15 and 15 degrees, or there
+     *                              is not at least one star.
+     */
+    public HeadlessSimulation(double windVelocity, double launchAngle, int numStars)
+            throws EnvironmentException, EmitterException {
+        manager = new ParticleManager(windVelocity, launchAngle, numStars);
+    }
+
+    /**
+     * A mutator for the simulated time between ticks.
+     *
+     * @param timeStep The time step in seconds.
+     */
+    public void setTimeStep(double timeStep) {
+        if (timeStep <= 0)
+            throw new IllegalArgumentException("Time step must be positive: " + timeStep);
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * A mutator for the solver used to move the particles.
+     *
+     * @param solver The solver.
+     */
+    public void setSolver(Solver solver) {
+        manager.setSolver(solver);
+    }
+
+    /**
+     * A mutator for the solver used to move one type of particle.
+     *
+     * @param type   The type index: ParticleStore.STAR, SPARK or LAUNCH_SPARK.
+     * @param solver The solver.
+     */
+    public void setSolver(byte type, Solver solver) {
+        manager.setSolver(type, solver);
+    }
+
+    /**
+     * A mutator for the seed of the show's random numbers, so that a run can be repeated exactly.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        manager.setSeed(seed);
+    }
+
+    /**
+     * A mutator for the sink each tick is recorded to.  Recording publishes a frame after every
+     * tick, which adds to the wall time.  The caller closes the sink after the run.
+     *
+     * @param recorder The sink, such as a FrameRecorder, or null for none.
+     */
+    public void setRecorder(FrameSink recorder) {
+        manager.setRecorder(recorder);
+        recording = recorder != null;
+    }
+
+    /**
+     * An accessor for the ParticleManager being run.
+     *
+     * @return The ParticleManager.
+     */
+    public ParticleManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Runs the show until every star has been launched and burnt out, or until the supplied
+     * simulated time is reached, whichever comes first.
+     *
+     * @param maxTime The longest simulated time to run, in seconds.
+     */
+    public void run(double maxTime) {
+        long startTime = System.nanoTime();
+        if (ticks == 0)
+            manager.start(simulatedTime);
+        while (!manager.checkIfFinished() && simulatedTime < maxTime) {
+            manager.update(simulatedTime);
+            if (recording)
+                manager.publish();
+            peakParticleCount = Math.max(peakParticleCount, manager.getParticleCount());
+            simulatedTime += timeStep;
+            ticks++;
+        }
+        wallTime += System.nanoTime() - startTime;
+    }
+
+    /**
+     * An accessor for the simulated time run so far.
+     *
+     * @return The simulated time in seconds.
+     */
+    public double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    /**
+     * An accessor for the wall clock time spent running the simulation.
+     *
+     * @return The wall time in seconds.
+     */
+    public double getWallTime() {
+        return wallTime / 1e9;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * An accessor for the largest number of particles alive at the end of any tick.
+     *
+     * @return The peak particle count.
+     */
+    public int getPeakParticleCount() {
+        return peakParticleCount;
+    }
+
+    /**
+     * Returns the number of simulated seconds run for every second of wall clock time.
+     *
+     * @return The simulation speed, or zero if nothing has been run.
+     */
+    public double getSimulatedSecondsPerWallSecond() {
+        return wallTime == 0 ? 0 : simulatedTime / getWallTime();
+    }
+
+    /**
+     * Returns the number of function evaluations the solver made for every simulated second.
+     *
+     * @return The evaluations per simulated second, counting each particle separately, or zero if
+     * nothing has been run.
+     */
+    public double getEvaluationsPerSimulatedSecond() {
+        return simulatedTime == 0 ? 0 : manager.getEvaluations() / simulatedTime;
+    }
+
+    /**
+     * A report of the run so far.
+     *
+     * @return A string containing the simulated and wall times, the speed, the peak particle count
+     * and the solver's work.
+     */
+    public String toString() {
+        return String.format("Simulated %.2f s in %.3f s wall time (%d ticks): %.1f simulated s per wall s, "
+                        + "peak %d particles, %.0f evaluations per simulated s", simulatedTime, getWallTime(),
+                ticks, getSimulatedSecondsPerWallSecond(), peakParticleCount, getEvaluationsPerSimulatedSecond());
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds in buckets of exponentially growing width, so any percentile can be
+ * read to within about 6% using a fixed, small amount of memory.  Each power of two is split into
+ * sixteen buckets.  Recording a duration is one atomic increment and allocates nothing, so it can be
+ * done from a real-time thread while another thread reads the percentiles, without locking.
+ * <p>
+ * The percentiles are read without stopping the writers, so a reading taken while durations are being
+ * recorded may be out by the few durations recorded during it.
+ *
+ * @version 1.0
+ */
+class LatencyHistogram {
+
+    // Each power of two is split into 2^SUB_BUCKET_BITS buckets.
+    private final static int SUB_BUCKET_BITS = 4;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Durations of 2^MAX_EXPONENT ns (about 18 minutes) or more go in the last bucket.
+    private final static int MAX_EXPONENT = 40;
+    private final static int NUM_BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds.  Negative durations count as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        long previous = max.get();
+        while (value > previous && !max.compareAndSet(previous, value))
+            previous = max.get();
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return The count.
+     */
+    long getCount() {
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * Returns a percentile of the durations recorded: the top of the bucket holding it, which is at
+     * most about 6% above the real value.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The duration in nanoseconds, or 0 if none have been recorded.
+     */
+    long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValueIn(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the longest duration recorded.
+     *
+     * @return The duration in nanoseconds, or 0 if none have been recorded.
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram.  Durations recorded at the same time may or may not be kept.
+     */
+    void reset() {
+        for (int i = 0; i < NUM_BUCKETS; i++)
+            counts.set(i, 0);
+        max.set(0);
+    }
+
+    // Returns the bucket for a duration.  Values below SUB_BUCKETS have a bucket each, and above that
+    // the bucket is picked by the highest set bit and the SUB_BUCKET_BITS bits below it.
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT)
+            return NUM_BUCKETS - 1;
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Returns the largest duration that falls in a bucket.
+    private static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
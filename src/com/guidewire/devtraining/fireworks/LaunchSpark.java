@@ -8,7 +8,7 @@ import java.awt.geom.Point2D;
  */
 public class LaunchSpark extends Spark {
 
-    private final double RADIUS = 0.0005;    // metre
+    final static double RADIUS = 0.0005;    // metre
 
     /**
      * The LaunchSpark constructor.
@@ -17,10 +17,10 @@ public class LaunchSpark extends Spark {
      * @param initialPos   The initial position of the spark.
      * @param initialV     The initial velocity component of the spark.
      * @param lifetime     The lifetime of the spark in seconds.
-     * @param starColor    The color of the spark.
+     * @param starColor    The Palette index of the color of the spark.
      */
     public LaunchSpark(double creationTime, Point2D.Double initialPos, Point2D.Double initialV,
-                       double lifetime, String starColor) {
+                       double lifetime, int starColor) {
         super(creationTime, initialPos, initialV, lifetime, starColor);
         this.setStartingRadius(RADIUS);
     }
@@ -6,7 +6,7 @@ import java.util.ArrayList;
 /**
  * Emitter for launch sparks.
  *
- * @version 1.1
+ * @version 1.4
  */
 public class LaunchSparkEmitter extends Emitter {
 
@@ -35,16 +35,15 @@ public class LaunchSparkEmitter extends Emitter {
      * @return An ArrayList containing LaunchSpark objects.
      */
     public ArrayList<LaunchSpark> launch(double time) {
-        Point2D.Double vInitial;
-        double angle;
         Point2D.Double position = getPosition();
-        Point2D.Double velocity = getVelocity();
-        ArrayList<LaunchSpark> sparks = new ArrayList<>(NUM_LAUNCHED);
-        for (int i = 0; i < NUM_LAUNCHED; i++) {
-            angle = getRandomLaunchAngle();
-            vInitial = new Point2D.Double(velocity.x + getExitVelocity() * Math.sin(angle), velocity.y + getExitVelocity() * Math.cos(angle));
-            sparks.add(new LaunchSpark(time, position, vInitial, LIFETIME, "orange"));
-        }
+        int count = drawBurst(NUM_LAUNCHED, time, 0);
+        ArrayList<LaunchSpark> sparks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            sparks.add(new LaunchSpark(time, position, getBurstVelocity(i), LIFETIME, Palette.ORANGE));
         return sparks;
     }
+
+    protected int emit(double time, ParticleStore store, int group) {
+        return emitBurst(store, group, ParticleStore.LAUNCH_SPARK, NUM_LAUNCHED, time, 0, LIFETIME, Palette.ORANGE);
+    }
 }
@@ -6,13 +6,14 @@ import java.util.ArrayList;
 /**
  * Emitter for Roman candle stars.
  *
- * @version 1.1
+ * @version 1.6
  */
 public class LaunchTube extends Emitter {
 
     // Keeps track of the number of stars launched so the colors can change.
     private int numLaunched = 0;
-    private String[] colors = {"blue", "green", "orange", "red", "yellow", "white", "cyan", "magenta"};
+    private int numStars = 8;
+    private int[] colors = Palette.getStarColors();
 
     /**
      * The LaunchTube constructor.
@@ -28,12 +29,86 @@ public class LaunchTube extends Emitter {
     public LaunchTube(Point2D.Double initialPos, Point2D.Double initialV,
                       double exitVelocity, double firingAngle, double variation) throws EmitterException {
         super(initialPos, initialV, exitVelocity, firingAngle, variation);
+        checkFiringAngle(firingAngle);
+    }
+
+    /**
+     * A mutator for the random variation range of the launch angle.
+     *
+     * @param variation The variation in degrees.
+     * @throws EmitterException If the variation is not between 0 and 10 degrees.
+     */
+    public void setLaunchAngleVariation(double variation) throws EmitterException {
+        checkVariation(variation);
+        super.setLaunchAngleVariation(variation);
+    }
+
+    /**
+     * A mutator for the number of stars the tube will launch.  The colors repeat after the eighth star.
+     *
+     * @param numStars The number of stars.
+     * @throws EmitterException If the number of stars is less than one.
+     */
+    public void setNumStars(int numStars) throws EmitterException {
+        checkNumStars(numStars);
+        this.numStars = numStars;
+    }
+
+    /**
+     * A mutator for the colors of the stars, which are used in turn.  The eight star colors of the
+     * Palette are used by default.
+     *
+     * @param colors The Palette indices of the colors, which are copied.
+     */
+    public void setColors(int[] colors) {
+        if (colors.length == 0)
+            throw new IllegalArgumentException("At least one color is needed");
+        this.colors = colors.clone();
+    }
+
+    /**
+     * A mutator for the number of stars the tube has already launched, which picks the color of the
+     * next star.  This lets one tube object fire the stars of many tubes in a show.
+     *
+     * @param numLaunched The number of stars launched.
+     */
+    public void setNumLaunched(int numLaunched) {
+        this.numLaunched = numLaunched;
+    }
+
+    /**
+     * Checks that a firing angle is legal for a launch tube.
+     *
+     * @param firingAngle The launch angle, from the vertical in degrees.
+     * @throws EmitterException If the angle is not between -15 and 15 degrees.
+     */
+    static void checkFiringAngle(double firingAngle) throws EmitterException {
         if (firingAngle < -15 || firingAngle > 15)
             throw new EmitterException("Launch angle out of range.");
+    }
+
+    /**
+     * Checks that a launch angle variation is legal for a launch tube.
+     *
+     * @param variation The random variation range of the launch angle in degrees.
+     * @throws EmitterException If the variation is not between 0 and 10 degrees.
+     */
+    static void checkVariation(double variation) throws EmitterException {
         if (variation < 0 || variation > 10)
             throw new EmitterException("Variation angle out of range");
     }
 
+    /**
+     * Checks that a number of stars is legal for a launch tube.
+     *
+     * @param numStars The number of stars.
+     * @throws EmitterException If the number of stars is less than one.
+     */
+    static void checkNumStars(int numStars) throws EmitterException {
+        if (numStars < 1)
+            throw new EmitterException("Number of stars out of range: " + numStars);
+    }
+
     /**
      * Creates and "launches" a star at the given time in seconds.
      *
@@ -42,16 +117,20 @@ public class LaunchTube extends Emitter {
      * initial velocity components and the desired color.
      */
     public ArrayList<Star> launch(double time) {
-        double angle = getRandomLaunchAngle();
-        Point2D.Double position = getPosition();
-        Point2D.Double velocity = getVelocity();
-        Point2D.Double vInitial = new Point2D.Double(velocity.x + getExitVelocity() * Math.sin(angle)
-                , velocity.y + getExitVelocity() * Math.cos(angle));
-        ArrayList<Star> star = new ArrayList<>();
-        if (numLaunched != 8)
-            star.add(new Star(time, position, vInitial, colors[numLaunched]));
+        int color = colors[numLaunched % colors.length];
+        int launched = drawBurst(numLaunched < numStars ? 1 : 0, time, 0);
         numLaunched++;
+        ArrayList<Star> star = new ArrayList<>();
+        if (launched > 0)
+            star.add(new Star(time, getPosition(), getBurstVelocity(0), color));
         return star;
     }
 
+    protected int emit(double time, ParticleStore store, int group) {
+        int launched = numLaunched < numStars ? 1 : 0;
+        int color = colors[numLaunched % colors.length];
+        numLaunched++;
+        return emitBurst(store, group, ParticleStore.STAR, launched, time, 0, Star.LIFETIME, color);
+    }
+
 }
@@ -0,0 +1,32 @@
+package com.guidewire.devtraining.fireworks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one frame painted by the window.  When no recording is running, the
+ * event costs almost nothing.
+ *
+ * @version 1.0
+ */
+@Name("com.guidewire.devtraining.fireworks.Paint")
+@Label("Frame Paint")
+@Category("Fireworks")
+@Description("One frame rendered by the painter")
+@StackTrace(false)
+class PaintEvent extends jdk.jfr.Event {
+
+    @Label("Frame Time")
+    @Description("The simulated time of the frame in seconds, or NaN if there was no frame")
+    double frameTime;
+
+    @Label("Particles")
+    int particles;
+
+    @Label("Replay")
+    @Description("Whether the frame came from a recording")
+    boolean replay;
+}
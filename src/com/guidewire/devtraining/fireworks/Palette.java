@@ -0,0 +1,101 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The colors a particle may have.  Particles, emitters, the particle store and the renderer all carry
+ * a color as a small index into this palette, so looking a color up is a single array access and no
+ * names are compared while the show is running.  Names are only used to build a color index from
+ * text, and to describe a particle.
+ * <p>
+ * Colors are held as packed ARGB values, so the palette does not depend on AWT.
+ *
+ * @version 1.1
+ */
+public final class Palette {
+
+    public final static int BLUE = 0;
+    public final static int GREEN = 1;
+    public final static int ORANGE = 2;
+    public final static int RED = 3;
+    public final static int YELLOW = 4;
+    public final static int WHITE = 5;
+    public final static int CYAN = 6;
+    public final static int MAGENTA = 7;
+    /**
+     * The color used for a name that is not in the palette.
+     */
+    public final static int BLACK = 8;
+
+    // The colors of the stars, in the order the launch tube fires them.
+    private final static int[] STAR_COLORS = {BLUE, GREEN, ORANGE, RED, YELLOW, WHITE, CYAN, MAGENTA};
+
+    private final static String[] NAMES = {"blue", "green", "orange", "red", "yellow", "white", "cyan",
+            "magenta", "black"};
+    // The same values as the java.awt.Color constants of the same names.
+    private final static int[] ARGB = {0xff0000ff, 0xff00ff00, 0xffffc800, 0xffff0000, 0xffffff00,
+            0xffffffff, 0xff00ffff, 0xffff00ff, 0xff000000};
+
+    private Palette() {
+    }
+
+    /**
+     * An accessor for the number of colors in the palette.
+     *
+     * @return The number of colors.  Color indices run from 0 to one less than this.
+     */
+    public static int size() {
+        return ARGB.length;
+    }
+
+    /**
+     * Returns the colors of the stars, in the order the launch tube fires them.
+     *
+     * @return A new array of color indices, which the caller may keep or change.
+     */
+    public static int[] getStarColors() {
+        return STAR_COLORS.clone();
+    }
+
+    /**
+     * Tells whether a color index is in the palette.
+     *
+     * @param color The color index.
+     * @return True if the index names a color.
+     */
+    public static boolean contains(int color) {
+        return color >= 0 && color < ARGB.length;
+    }
+
+    /**
+     * Returns the index of a color name.
+     *
+     * @param name The name of the color, in any case.
+     * @return The color index, or BLACK if the color is not known.
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name))
+                return i;
+        }
+        return BLACK;
+    }
+
+    /**
+     * An accessor for the name of a color.
+     *
+     * @param color The color index.
+     * @return The name of the color in lower case.
+     */
+    public static String getName(int color) {
+        return NAMES[color];
+    }
+
+    /**
+     * An accessor for the value of a color.
+     *
+     * @param color The color index.
+     * @return The color as a packed ARGB value, with an alpha of 0xff.
+     */
+    public static int getArgb(int color) {
+        return ARGB[color];
+    }
+}
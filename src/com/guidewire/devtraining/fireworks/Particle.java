@@ -5,11 +5,11 @@ import java.awt.geom.Point2D;
 /**
  * A base class for all particles.
  *
- * @version 2.0
+ * @version 2.2
  */
 public abstract class Particle extends Firework implements ODESystem {
 
-    private final double DRAG_COEFF = 0.4;        // unitless
+    final static double DRAG_COEFF = 0.4;        // unitless
     private final int SYSTEM_SIZE = 2;
 
     private double startingRadius;                // metre
@@ -17,17 +17,17 @@ public abstract class Particle extends Firework implements ODESystem {
     private double wind;                        // m/sec
     private double creationTime;                // sec
     private double lifetime;                    // sec
-    private String color;
+    private int color;                            // palette index
 
     /**
      * The Particle constructor.
      *
      * @param creationTime The absolute time of creation of the particle.
      * @param initialPos   The initial position of the particle in the X direction.
-     * @param color        The color of the particle.
+     * @param color        The Palette index of the color of the particle.
      */
     public Particle(double creationTime, Point2D.Double initialPos,
-                    Point2D.Double initialV, String color) {
+                    Point2D.Double initialV, int color) {
         super(initialPos, initialV);
         this.creationTime = creationTime;
         this.color = color;
@@ -70,9 +70,9 @@ public abstract class Particle extends Firework implements ODESystem {
     /**
      * An accessor for the particle color.
      *
-     * @return The color of the particle.
+     * @return The Palette index of the color of the particle.
      */
-    public String getColor() {
+    public int getColor() {
         return color;
     }
 
@@ -114,6 +114,17 @@ public abstract class Particle extends Firework implements ODESystem {
         return startingMass;
     }
 
+    /**
+     * Returns the area the particle presents to the air at a given time.
+     *
+     * @param time The time in seconds.
+     * @return The drag area in m*m.
+     */
+    public double getDragArea(double time) {
+        double radius = getRadius(time);
+        return Math.PI * radius * radius;
+    }
+
     public int getSystemSize() {
         return SYSTEM_SIZE;
     }
@@ -125,44 +136,30 @@ public abstract class Particle extends Firework implements ODESystem {
     }
 
     // Calculates the magnitude of the drag force on the star, given time in
-    // seconds and the two velocity components in m/sec.
-    private double getDragForce(double time, double vx, double vy) {
-        double velocityMag = getVelocityMag(vx, vy);
-        double radius = getRadius(time);
-        double area = Math.PI * radius * radius;
-        return Environment.DENSITY_AIR * velocityMag * velocityMag * area * DRAG_COEFF / 2;
+    // seconds and the velocity magnitude in m/sec.
+    private double getDragForce(double time, double velocityMag) {
+        return Environment.DENSITY_AIR * velocityMag * velocityMag * getDragArea(time) * DRAG_COEFF / 2;
     }
 
-    // This method returns the value of the fx function, given the
+    // This method returns the values of the fx and fy functions, given the
     // time in seconds and the two velocity components in m/sec.
-    // The meaning of fx is described in the assignment statement.
-    private double xDE(double time, double vx, double vy) {
-        // Use apparent x velocity to calculate drag.
-        double vxa = vx - wind;
-        double velocityMag = getVelocityMag(vxa, vy);
-        double mass = getMass(time);
-        double dragForce = getDragForce(time, vxa, vy);
-        return -dragForce * vxa / (mass * velocityMag);
-    }
-
-    // This method returns the value of the fy function, given the
-    // time in seconds and the two velocity components in m/sec.
-    // The meaning of fy is described in the assignment statement.
-    private double yDE(double time, double vx, double vy) {
-        // Use apparent x velocity to calculate drag.
-        double vxa = vx - wind;
-        double velocityMag = getVelocityMag(vxa, vy);
-        double mass = getMass(time);
-        double dragForce = getDragForce(time, vxa, vy);
-        return -Environment.G - dragForce * vy / (mass * velocityMag);
-    }
-
+    // The meaning of fx and fy is described in the assignment statement.
+    // The mass and drag force are the same for both, so they are only worked out once.
     public double[] getFunction(double time, double[] values) {
         double[] functionVal = new double[SYSTEM_SIZE];
-        double vX = values[0];
+        // Use apparent x velocity to calculate drag.
+        double vxa = values[0] - wind;
         double vY = values[1];
-        functionVal[0] = xDE(time, vX, vY);
-        functionVal[1] = yDE(time, vX, vY);
+        double velocityMag = getVelocityMag(vxa, vY);
+        if (velocityMag == 0) {
+            // No drag at rest in the air, where its direction would be 0 / 0.
+            functionVal[1] = -Environment.G;
+            return functionVal;
+        }
+        double mass = getMass(time);
+        double dragForce = getDragForce(time, velocityMag);
+        functionVal[0] = -dragForce * vxa / (mass * velocityMag);
+        functionVal[1] = -Environment.G - dragForce * vY / (mass * velocityMag);
         return functionVal;
     }
 
@@ -192,6 +189,6 @@ public abstract class Particle extends Firework implements ODESystem {
      * @return A string containing the color and position of the particle.
      */
     public String toString() {
-        return ", " + color + ", at" + super.toString();
+        return ", " + Palette.getName(color) + ", at" + super.toString();
     }
 }
@@ -0,0 +1,158 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * Keeps a show within its frame deadline by scaling down the sparks that make up most of its
+ * particles when ticking and painting a frame get close to taking the whole frame time, and scaling
+ * them back up once there is time to spare.
+ * <p>
+ * The simulation records the cost of each tick and the painter the cost of each frame it paints.
+ * A simulation that falls behind runs several ticks for each frame it publishes, so the tick costs are
+ * added up until the frame is published, and the budget keeps a moving average of the simulation's
+ * cost per frame and of the paint cost.  Their sum is compared with the deadline as each frame is
+ * published.  Above HIGH_WATER of the deadline the emission level is cut by a fraction, and below
+ * LOW_WATER it is raised by a step, so the level falls quickly when frames are at risk and comes back
+ * slowly.  Between the two it is left alone, and after each change it is held for a while so the
+ * change can show in the cost before it is judged, which keeps the level from swinging back and forth.
+ * <p>
+ * Emitters given the budget launch their usual number of sparks times getEmissionScale, and give
+ * them their usual lifetime times getLifetimeScale, which falls only half as far.  Fewer sparks that
+ * live a little less keep the look of the show while cutting the number of particles to move and draw.
+ * A show run with a budget depends on how fast the machine is, so it is no longer repeatable bit for bit.
+ *
+ * @version 1.1
+ */
+public class ParticleBudget {
+
+    /**
+     * The default time allowed for ticking and painting one frame, at 60 frames per second.
+     */
+    public final static long DEFAULT_DEADLINE = 16_666_667L;    // nanoseconds
+    /**
+     * The lowest emission level, at which a tenth of the usual sparks are launched.
+     */
+    public final static double MIN_LEVEL = 0.1;
+
+    // The fractions of the deadline above which the level is cut, and below which it is raised.
+    private final static double HIGH_WATER = 0.8;
+    private final static double LOW_WATER = 0.5;
+    // The level is multiplied by CUT when frames are at risk, and raised by RESTORE when there is time to spare.
+    private final static double CUT = 0.85;
+    private final static double RESTORE = 0.05;
+    // The weight of each new cost in the moving averages.
+    private final static double SMOOTHING = 0.1;
+    // The number of frames the level is held after a change, long enough for most sparks launched
+    // before the change to have expired.
+    private final static int SETTLE_FRAMES = 30;
+    // The lifetime scale at the lowest level, as a lifetime cut too far no longer looks like a spark.
+    private final static double LIFETIME_FLOOR = 0.5;
+
+    private long deadline = DEFAULT_DEADLINE;    // nanoseconds
+    // The cost of the ticks run since the last frame was published.
+    private long frameTickCost;    // nanoseconds
+    // The moving average of the simulation's cost per published frame.
+    private volatile double tickCost;    // nanoseconds
+    // Changed only by the painter.
+    private volatile double paintCost;    // nanoseconds
+    private volatile double level = 1;
+    private int settle;
+
+    /**
+     * A mutator for the time allowed for ticking and painting one frame.
+     *
+     * @param deadline The time in nanoseconds.
+     */
+    public void setDeadline(long deadline) {
+        if (deadline <= 0)
+            throw new IllegalArgumentException("Deadline must be positive: " + deadline);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Records the cost of a tick of the simulation, which is counted against the next frame to be
+     * published.  Only the simulation thread may call this.
+     *
+     * @param nanos The time the tick took in nanoseconds.
+     */
+    public void recordTick(long nanos) {
+        frameTickCost += nanos;
+    }
+
+    /**
+     * Records that a frame has been published, taking the ticks run for it as the simulation's cost of
+     * the frame, and adjusts the emission level.  Only the simulation thread may call this.
+     */
+    public void recordFrame() {
+        tickCost += SMOOTHING * (frameTickCost - tickCost);
+        frameTickCost = 0;
+        if (settle > 0) {
+            settle--;
+            return;
+        }
+        double cost = tickCost + paintCost;
+        if (cost > HIGH_WATER * deadline && level > MIN_LEVEL) {
+            level = Math.max(level * CUT, MIN_LEVEL);
+            settle = SETTLE_FRAMES;
+        } else if (cost < LOW_WATER * deadline && level < 1) {
+            level = Math.min(level + RESTORE, 1);
+            settle = SETTLE_FRAMES;
+        }
+    }
+
+    /**
+     * Records the cost of painting a frame.  Only the painter may call this.
+     *
+     * @param nanos The time the frame took to paint in nanoseconds.
+     */
+    public void recordPaint(long nanos) {
+        paintCost += SMOOTHING * (nanos - paintCost);
+    }
+
+    /**
+     * An accessor for the emission level, from MIN_LEVEL when frames are at risk up to 1 when there
+     * is time to spare.
+     *
+     * @return The level.
+     */
+    public double getLevel() {
+        return level;
+    }
+
+    /**
+     * An accessor for the fraction of their usual number of sparks that emitters should launch.
+     *
+     * @return The scale, which is the emission level.
+     */
+    public double getEmissionScale() {
+        return level;
+    }
+
+    /**
+     * An accessor for the fraction of their usual lifetime that emitters should give their sparks.
+     *
+     * @return The scale, from LIFETIME_FLOOR up to 1.
+     */
+    public double getLifetimeScale() {
+        return LIFETIME_FLOOR + (1 - LIFETIME_FLOOR) * level;
+    }
+
+    /**
+     * An accessor for the moving average of the cost of ticking and painting a frame.
+     *
+     * @return The cost in milliseconds.
+     */
+    public double getFrameCostMillis() {
+        return (tickCost + paintCost) / 1e6;
+    }
+
+    /**
+     * Goes back to the full emission level and forgets the costs measured so far, for a new show.
+     * Only the simulation thread may call this while a show is running.
+     */
+    public void reset() {
+        frameTickCost = 0;
+        tickCost = 0;
+        paintCost = 0;
+        level = 1;
+        settle = 0;
+    }
+}
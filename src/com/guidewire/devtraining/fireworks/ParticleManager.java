@@ -1,18 +1,43 @@
 package com.guidewire.devtraining.fireworks;
 
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class manages the simulation.  It draws the Roman candle and launches 8 stars of various colors.
  * The class also manages all the other particle effects: the sparks emitted by the star, the
  * launch sparks and the delay charge sparks.
+ * <p>
+ * Once the number of particles reaches the parallel threshold, their positions are updated in chunks
+ * across a ForkJoinPool.  Removing dead particles and launching new ones always happen on the calling
+ * thread, in order, so the simulation gives the same result whether or not it runs in parallel.
+ * Every random number is drawn from generators split from one show generator, so a show given a
+ * seed can be repeated bit for bit.
+ * <p>
+ * A FrameSink may be given every published frame, to record the show for replaying later or to
+ * export it as images.
+ * <p>
+ * Particles that have fallen below the ground, or left the viewport for good, are retired on each
+ * update without waiting for their lifetime to end.  Only the ground is known until setViewport is
+ * called.
+ * <p>
+ * Given a ParticleBudget, the cost of each update is recorded to it, and the star and delay charge
+ * sparks are scaled down by it when the show is close to missing its frame deadline.
+ * <p>
+ * Each update and each star launch is also reported as a Flight Recorder event, which costs almost
+ * nothing unless a recording is running.
  *
- * @version 1.1
+ * @version 1.15
  */
 public class ParticleManager {
 
+    /**
+     * The default number of particles at which updates start to run in parallel.
+     */
+    public final static int DEFAULT_PARALLEL_THRESHOLD = PositionUpdater.DEFAULT_PARALLEL_THRESHOLD;
+
     boolean finished;
 
     private double deltaTime;        // seconds
@@ -23,12 +48,27 @@ public class ParticleManager {
     private StarSparkEmitter starSparkEmit;
     private LaunchSparkEmitter launchSparkEmit;
     private DelaySparkEmitter delaySparkEmit;
-    // This ArrayList will hold all the generated particles.
-    private ArrayList<Particle> fireworks = new ArrayList<>();
-    private int numStars = 8;
+    // This store will hold all the generated particles.
+    private ParticleStore fireworks = new ParticleStore();
+    // Hands the particles to the renderer after each tick.
+    private FrameBuffer frames = new FrameBuffer();
+    private int numStars;
     private int countStars = 0;
     private double starLaunchTime;
     private double maxExitVelocity;
+    private final PositionUpdater updater = new PositionUpdater();
+    private boolean preserveOrder = true;
+    // The single tube, in the middle, as it is drawn in each frame.
+    private final double[] tubeX = {0};                    // metre
+    private final double[] tubeAngle = new double[1];    // degrees
+    // The show generator, from which each emitter's generator is split.
+    private SplittableRandom random = new SplittableRandom();
+    private FrameSink recorder;
+    private SimulationMetrics metrics;
+    // The number of particles after the last update, from which the number spawned since is found.
+    private int lastSize;
+    private Viewport viewport = Viewport.GROUND;
+    private ParticleBudget budget;
 
     /**
      * The ParticleManager constructor
@@ -39,6 +79,22 @@ public class ParticleManager {
      * @throws EmitterException     If the launch angle is not between -15 and 15 degrees.
      */
     public ParticleManager(double windVelocity, double launchAngle) throws EnvironmentException, EmitterException {
+        this(windVelocity, launchAngle, 8);
+    }
+
+    /**
+     * A ParticleManager constructor that sets the number of stars in the show.
+     *
+     * @param windVelocity The wind velocity in m/sec.
+     * @param launchAngle  The launch angle of the Roman candle in degrees off the vertical.
+     * @param numStars     The number of stars to launch, one after the other.
+     * @throws EnvironmentException If the wind velocity is not between -20 and 20 m/sec.
+     * @throws EmitterException     If the launch angle is not between -15 and 15 degrees, or there
+     *                              is not at least one star.
+     */
+    public ParticleManager(double windVelocity, double launchAngle, int numStars)
+            throws EnvironmentException, EmitterException {
+        this.numStars = numStars;
         env = new Environment(windVelocity);
         double la = Math.PI * launchAngle / 180.0;    // radians
         // Position the star emitter at the end of the roman candle.  Use a launch velocity of 22 m/sec
@@ -46,91 +102,117 @@ public class ParticleManager {
         maxExitVelocity = 22;
         tube = new LaunchTube(new Point2D.Double(Math.sin(la), Math.cos(la))
                 , new Point2D.Double(0.0, 0.0), maxExitVelocity, launchAngle, 2);
+        tube.setNumStars(numStars);
+        tube.setRandom(random.split());
         lastTime = 0;
     }
 
+    /**
+     * A mutator for the seed of the show's random numbers.  Two shows with the same seed and settings,
+     * updated at the same times, are identical.  Call this before the show is started.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+        tube.setRandom(random.split());
+    }
+
     /**
      * Launches a single star at the supplied absolute time and adds one set of launch sparks.
      *
      * @param time The absolute time in seconds.  The first star will be launched at time=0.
      */
     public void start(double time) {
+        StarLaunchEvent event = new StarLaunchEvent();
+        event.begin();
+        int sizeBefore = fireworks.size();
         // Add some variation to the star's exit velocity
-        tube.setExitVelocity(maxExitVelocity - 2 * Math.random());
+        tube.setExitVelocity(maxExitVelocity - 2 * random.nextDouble());
         finished = false;
-        // Launch the star
-        ArrayList<Star> starSet = tube.launch(time);
-        if (starSet.size() == 0)
+        // Launch the star straight into the particles collection.
+        int starIndex = fireworks.size();
+        if (tube.launch(time, fireworks) == 0)
             return;
-        Star singleStar = starSet.get(0);
         starLaunchTime = time;
-        // Add the star to the particles collection.
-        fireworks.add(singleStar);
         // Create the spark emitters using the initial position and velocity of the star.
-        Point2D.Double position = singleStar.getPosition();
-        Point2D.Double velocity = singleStar.getVelocity();
+        Point2D.Double position = new Point2D.Double(fireworks.getX(starIndex), fireworks.getY(starIndex));
+        Point2D.Double velocity = new Point2D.Double(fireworks.getVelocityX(starIndex),
+                fireworks.getVelocityY(starIndex));
+        int color = fireworks.getColor(starIndex);
         double launchAngle = tube.getLaunchAngle();
         try {
             // Star sparks of the same color as the star will be launched at 3 m/sec in all directions.
             starSparkEmit = new StarSparkEmitter(position, velocity, 3, 0, 180);
-            starSparkEmit.setColor(singleStar.getColor());
+            starSparkEmit.setColor(color);
+            starSparkEmit.setRandom(random.split());
+            starSparkEmit.setBudget(budget);
             // Launch sparks will be launched at 20 m/sec within 3 degrees of the star's launch angle.
             launchSparkEmit = new LaunchSparkEmitter(position, new Point2D.Double(0.0, 0.0), 20, launchAngle, 3);
+            launchSparkEmit.setRandom(random.split());
             // Delay charge sparks will be sprayed out at 2.2 m/sec.
             delaySparkEmit = new DelaySparkEmitter(position, new Point2D.Double(0.0, 0.0), 2.2, launchAngle, 90);
+            delaySparkEmit.setRandom(random.split());
+            delaySparkEmit.setBudget(budget);
         } catch (EmitterException e) {
             // Not likely to get here unless the angles are not legal.
             System.out.println(e.getMessage());
             return;
         }
         // Add launch sparks to "push" the star out.
-        fireworks.addAll(launchSparkEmit.launch(time));
+        launchSparkEmit.launch(time, fireworks);
+        if (event.shouldCommit()) {
+            event.simulationTime = time;
+            event.color = Palette.getName(color);
+            event.exitVelocity = tube.getExitVelocity();
+            event.spawned = fireworks.size() - sizeBefore;
+            event.particles = fireworks.size();
+            event.commit();
+        }
     }
 
     /**
-     * This method updates the simulation.
+     * This method updates the simulation.  Callers that do not draw the particles, such as a headless
+     * run, may call it directly instead of tick.
      *
      * @param time The absolute time in seconds. The simulation was started at time = 0;
      */
-    private void update(double time) {
+    public void update(double time) {
+        long startTime = metrics != null || budget != null ? System.nanoTime() : 0;
+        TickEvent event = new TickEvent();
+        event.begin();
         deltaTime = time - lastTime;
         lastTime = time;
-        int index = 0;
-        Particle firework;
-        // Clean out dead fireworks
-
-        while (fireworks.size() > 0 && index < fireworks.size()) {
-            firework = fireworks.get(index);
-            if (time - firework.getCreationTime() >= firework.getLifetime()) {
-                // Get rid of the star spark emitter if the star is gone.
-                if (firework instanceof Star)
-                    starSparkEmit = null;
-                fireworks.remove(index);
-            } else {
-                firework.updatePosition(time, deltaTime, env);
-                // Move the star spark emitter along with the star.
-                if (firework instanceof Star) {
-                    starSparkEmit.setPosition(firework.getPosition());
-                    starSparkEmit.setVelocity(firework.getVelocity());
-                }
-                index++;
-            }
+        // Clean out dead fireworks, and those that will never be seen again
+        int expired = fireworks.removeExpired(time, preserveOrder);
+        int retired = viewport != null
+                ? fireworks.removeOutside(viewport, env.getWindVelocity(), time, preserveOrder) : 0;
+        // Get rid of the star spark emitter if the star is gone.
+        int starIndex = fireworks.indexOf(ParticleStore.STAR);
+        if (starIndex < 0)
+            starSparkEmit = null;
+        // Move all the survivors in one pass.
+        updater.update(fireworks, env.getWindVelocity(), time, deltaTime);
+        // Move the star spark emitter along with the star.
+        if (starIndex >= 0 && starSparkEmit != null) {
+            starSparkEmit.reinitialize(fireworks.getX(starIndex), fireworks.getY(starIndex),
+                    fireworks.getVelocityX(starIndex), fireworks.getVelocityY(starIndex));
         }
 
         // Keep adding delay charge sparks until 3.5 seconds are up.
         if (time - starLaunchTime < 3.5) {
-            fireworks.addAll(delaySparkEmit.launch(time));
+            delaySparkEmit.launch(time, fireworks);
         }
         // Add star sparks as long as the starSpar emitter exists
         if (starSparkEmit != null) {
-            fireworks.addAll(starSparkEmit.launch(time));
+            starSparkEmit.launch(time, fireworks);
         }
         // If all the particles associated with the previous star are all gone, then prevent the particle
         // collection from becoming empty by adding delay charge sparks, and then playButton the launch
         // of another star.
-        if (fireworks.size() == 0) {
+        if (fireworks.isEmpty()) {
             if (countStars < numStars - 1) {
-                fireworks.addAll(delaySparkEmit.launch(time));
+                delaySparkEmit.launch(time, fireworks);
                 countStars++;
                 // Launch another star
                 start(time);
@@ -139,6 +221,92 @@ public class ParticleManager {
                 finished = true;
             }
         }
+        if (metrics != null || budget != null) {
+            long nanos = System.nanoTime() - startTime;
+            if (metrics != null)
+                metrics.recordTick(nanos, fireworks, fireworks.size() - lastSize + expired + retired, expired, retired);
+            if (budget != null)
+                budget.recordTick(nanos);
+        }
+        if (event.shouldCommit()) {
+            event.simulationTime = time;
+            event.timeStep = (long) (deltaTime * 1e9);
+            event.particles = fireworks.size();
+            event.spawned = fireworks.size() - lastSize + expired + retired;
+            event.expired = expired;
+            event.retired = retired;
+            event.commit();
+        }
+        lastSize = fireworks.size();
+    }
+
+    /**
+     * A mutator for the number of particles at which updates start to run in parallel.
+     *
+     * @param parallelThreshold The number of particles.  Use Integer.MAX_VALUE to always update on the
+     *                          calling thread.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        updater.setParallelThreshold(parallelThreshold);
+    }
+
+    /**
+     * A mutator for whether dead particles are removed in a way that keeps the survivors in the order
+     * they were launched.  Frames group the particles by color, so launch order is only the order
+     * particles of the same color are drawn in; a particle of a later color is drawn over an
+     * overlapping one of an earlier color whenever it was launched.  Removal is quicker when the order
+     * does not matter.
+     *
+     * @param preserveOrder True to keep the launch order, which is the default.
+     */
+    public void setPreserveOrder(boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+    }
+
+    /**
+     * A mutator for the solver used to move the particles.  The RungeKuttaSolver is used by default.
+     *
+     * @param solver The solver.
+     */
+    public void setSolver(Solver solver) {
+        fireworks.setSolver(solver);
+    }
+
+    /**
+     * A mutator for the solver used to move one type of particle.
+     *
+     * @param type   The type index: ParticleStore.STAR, SPARK or LAUNCH_SPARK.
+     * @param solver The solver.
+     */
+    public void setSolver(byte type, Solver solver) {
+        fireworks.setSolver(type, solver);
+    }
+
+    /**
+     * A mutator for the error tolerance of the DormandPrinceSolver.
+     *
+     * @param tolerance The largest error allowed in each step, relative to the size of the values plus one.
+     */
+    public void setTolerance(double tolerance) {
+        fireworks.setTolerance(tolerance);
+    }
+
+    /**
+     * An accessor for the work done by the solver so far.
+     *
+     * @return The number of function evaluations, counting each particle separately.
+     */
+    public long getEvaluations() {
+        return updater.getEvaluations();
+    }
+
+    /**
+     * A mutator for the pool used to run parallel updates.  The common pool is used by default.
+     *
+     * @param pool The ForkJoinPool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        updater.setPool(pool);
     }
 
 //    public double getFiringAngle() {
@@ -162,18 +330,121 @@ public class ParticleManager {
     }
 
     /**
-     * An accessor for the collection of particles.
-     * For this to work properly, each particle type should have have its own clone method.  (But they
-     * do not, which is OK...)
+     * An accessor for the number of live particles.
+     *
+     * @return The number of particles.
+     */
+    public int getParticleCount() {
+        return fireworks.size();
+    }
+
+    /**
+     * Advances the simulation to the supplied time and publishes a frame of the particles to the
+     * frame buffer, from which the renderer can take it on another thread.
      *
      * @param time The absolute time in seconds. The simulation started at time = 0.
-     * @return The collection of particles in an ArrayList.
      */
-    public ArrayList<Particle> getFireworks(double time) {
+    public void tick(double time) {
         update(time);
-        ArrayList<Particle> copy = new ArrayList<>(fireworks.size());
-        copy.addAll(fireworks.stream().collect(Collectors.toList()));
-        return copy;
+        publish();
+    }
+
+    /**
+     * Publishes a frame of the particles, as they were at the last update, to the frame buffer.
+     * A caller running several updates for each frame displayed only needs to publish after the last.
+     */
+    public void publish() {
+        tubeAngle[0] = tube.getLaunchAngle();
+        if (budget != null)
+            budget.recordFrame();
+        Frame frame = frames.publish(fireworks, lastTime, 1, tubeX, tubeAngle);
+        if (recorder != null) {
+            try {
+                recorder.record(frame);
+            } catch (IOException e) {
+                // Carry on with the show, but stop recording it.
+                System.out.println(e.getMessage());
+                recorder = null;
+            }
+        }
+    }
+
+    /**
+     * A mutator for the sink that each published frame is also handed to, such as a FrameRecorder or
+     * a FrameExporter.  The caller closes the sink once the show is over.
+     *
+     * @param recorder The sink, or null to stop recording.
+     */
+    public void setRecorder(FrameSink recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * A mutator for the part of the world that is shown.  Particles that can never come back into it
+     * are retired on each update.
+     *
+     * @param viewport The viewport, such as Viewport.forImage of the display size, or null to keep
+     *                 every particle until its lifetime is over.
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * An accessor for the number of particles retired early because they could not be seen again.
+     *
+     * @return The number of particles.
+     */
+    public long getRetiredCount() {
+        return fireworks.getRetiredCount();
+    }
+
+    /**
+     * An accessor for the lifetime the retired particles had left, added up, which is the simulated
+     * time for which particles were not moved.
+     *
+     * @return The total lifetime in seconds.
+     */
+    public double getRetiredLifetime() {
+        return fireworks.getRetiredLifetime();
+    }
+
+    /**
+     * A mutator for the budget that scales down the sparks when the show is close to missing its
+     * frame deadline.  The cost of each update is recorded to it and counted against the next frame
+     * published, and the caller records the cost of painting each frame.
+     *
+     * @param budget The budget, or null to always launch the usual sparks.
+     */
+    public void setBudget(ParticleBudget budget) {
+        this.budget = budget;
+        // The emitters of the star in flight, if any; those of later stars are given it as they are made.
+        if (starSparkEmit != null)
+            starSparkEmit.setBudget(budget);
+        if (delaySparkEmit != null)
+            delaySparkEmit.setBudget(budget);
+    }
+
+    /**
+     * A mutator for the metrics each update is recorded to.  Recording reads the clock and adds to
+     * lock-free counters, and allocates nothing.
+     *
+     * @param metrics The metrics, or null to stop measuring.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+        // Count only the particles spawned from here on, when metrics are attached part way through a show.
+        lastSize = fireworks.size();
+    }
+
+    /**
+     * An accessor for the buffer the simulation publishes its frames to.  The renderer should call
+     * acquire on it to get the latest frame.
+     *
+     * @return The frame buffer.
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frames;
     }
 
 }
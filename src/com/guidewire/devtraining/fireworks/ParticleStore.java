@@ -0,0 +1,726 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.Arrays;
+
+/**
+ * Holds the state of every live particle in parallel primitive arrays (a "structure of arrays"),
+ * rather than as one Particle object per spark.  A simulation tick is then a linear scan over
+ * contiguous memory.  Particles are addressed by index, from 0 to size() - 1.
+ * <p>
+ * The store is also the BatchODESystem for its particles, using the same drag equations as Particle,
+ * so the whole population can be advanced by the RungeKuttaSolver, or another Solver, without
+ * allocating.  Each type of particle may be given its own solver.
+ * <p>
+ * Each particle also carries a group number, which a show uses to record the launch tube that fired it.
+ * <p>
+ * The expiry of each particle is scheduled on an ExpiryWheel as it is added, so removeExpired only
+ * looks at the particles whose lifetime is nearly over, however many long-lived particles there are.
+ * Particles that can no longer be seen may be retired before their lifetime is over by removeOutside.
+ * <p>
+ * Emitters write their bursts straight into the columns, so launching creates no Particle objects
+ * and there is nothing to pool or recycle.  A dead particle's slot is reused by the next one added.
+ *
+ * @version 1.10
+ */
+public class ParticleStore implements BatchODESystem {
+
+    /**
+     * The type index of a Star.
+     */
+    public final static byte STAR = 0;
+    /**
+     * The type index of a star or delay charge Spark.
+     */
+    public final static byte SPARK = 1;
+    /**
+     * The type index of a LaunchSpark.
+     */
+    public final static byte LAUNCH_SPARK = 2;
+
+    private final static int INITIAL_CAPACITY = 256;
+
+    private double[] x;                // metre
+    private double[] y;                // metre
+    private double[] vx;            // m/sec
+    private double[] vy;            // m/sec
+    private double[] creationTime;    // sec
+    private double[] lifetime;        // sec
+    private byte[] type;
+    private int[] color;
+    private double[] step;            // sec, the first step the DormandPrinceSolver will try
+    private int[] group;
+    // Marks the particles being removed by removeExpired or removeOutside, and is otherwise all false.
+    private boolean[] expired;
+    private final ExpiryWheel wheel;
+    // The particles being retired by removeOutside.
+    private int[] retiring = new int[INITIAL_CAPACITY];
+    private long retiredCount;
+    private double retiredLifetime;    // sec
+    private int size;
+    // The number of particles of each type, indexed by type.
+    private final int[] typeCount = new int[3];
+    private double wind;            // m/sec
+    // The solver for each type of particle, indexed by type.
+    private final Solver[] solvers = {Solver.RUNGE_KUTTA, Solver.RUNGE_KUTTA, Solver.RUNGE_KUTTA};
+    private double tolerance = DormandPrinceSolver.DEFAULT_TOLERANCE;
+
+    /**
+     * The ParticleStore constructor.  The store starts empty and grows as particles are added.
+     */
+    public ParticleStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * A ParticleStore constructor that sets the initial capacity.
+     *
+     * @param capacity The number of particles the store can hold before it has to grow.
+     */
+    public ParticleStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        creationTime = new double[capacity];
+        lifetime = new double[capacity];
+        type = new byte[capacity];
+        color = new int[capacity];
+        step = new double[capacity];
+        group = new int[capacity];
+        expired = new boolean[capacity];
+        wheel = new ExpiryWheel(capacity);
+    }
+
+    /**
+     * Adds a particle to the end of the store.
+     *
+     * @param type         The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @param creationTime The absolute time of creation of the particle in seconds.
+     * @param x            The X position in metres.
+     * @param y            The Y position in metres.
+     * @param vx           The X velocity component in m/sec.
+     * @param vy           The Y velocity component in m/sec.
+     * @param lifetime     The lifetime of the particle in seconds.
+     * @param color        The Palette index of the color of the particle.
+     * @return The index of the new particle.
+     */
+    public int add(byte type, double creationTime, double x, double y, double vx, double vy,
+                   double lifetime, int color) {
+        return add(type, creationTime, x, y, vx, vy, lifetime, color, 0);
+    }
+
+    /**
+     * Adds a particle belonging to a group to the end of the store.
+     *
+     * @param type         The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @param creationTime The absolute time of creation of the particle in seconds.
+     * @param x            The X position in metres.
+     * @param y            The Y position in metres.
+     * @param vx           The X velocity component in m/sec.
+     * @param vy           The Y velocity component in m/sec.
+     * @param lifetime     The lifetime of the particle in seconds.
+     * @param color        The Palette index of the color of the particle.
+     * @param group        The group number, such as the index of the tube that fired the particle.
+     * @return The index of the new particle.
+     */
+    public int add(byte type, double creationTime, double x, double y, double vx, double vy,
+                   double lifetime, int color, int group) {
+        ensureCapacity(size + 1);
+        int index = size++;
+        this.type[index] = type;
+        typeCount[type]++;
+        this.creationTime[index] = creationTime;
+        this.x[index] = x;
+        this.y[index] = y;
+        this.vx[index] = vx;
+        this.vy[index] = vy;
+        this.lifetime[index] = lifetime;
+        this.color[index] = color;
+        step[index] = 0;
+        this.group[index] = group;
+        wheel.schedule(index, creationTime, creationTime + lifetime);
+        return index;
+    }
+
+    /**
+     * Adds a burst of particles of one type to the end of the store, all from the same position,
+     * copying each column in bulk.  This is how the emitters launch their particles, so no Particle
+     * objects are needed.
+     *
+     * @param type         The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @param count        The number of particles.
+     * @param creationTime The absolute time of creation of each particle in seconds.
+     * @param x            The X position in metres.
+     * @param y            The Y position in metres.
+     * @param vx           The X velocity component of each particle in m/sec.
+     * @param vy           The Y velocity component of each particle in m/sec.
+     * @param lifetime     The lifetime of the particles in seconds.
+     * @param color        The Palette index of the color of the particles.
+     * @param group        The group number, such as the index of the tube that fired the particles.
+     * @return The index of the first new particle.
+     */
+    public int add(byte type, int count, double[] creationTime, double x, double y, double[] vx, double[] vy,
+                   double lifetime, int color, int group) {
+        ensureCapacity(size + count);
+        int start = size;
+        int end = start + count;
+        Arrays.fill(this.type, start, end, type);
+        System.arraycopy(creationTime, 0, this.creationTime, start, count);
+        Arrays.fill(this.x, start, end, x);
+        Arrays.fill(this.y, start, end, y);
+        System.arraycopy(vx, 0, this.vx, start, count);
+        System.arraycopy(vy, 0, this.vy, start, count);
+        Arrays.fill(this.lifetime, start, end, lifetime);
+        Arrays.fill(this.color, start, end, color);
+        Arrays.fill(step, start, end, 0);
+        Arrays.fill(this.group, start, end, group);
+        typeCount[type] += count;
+        size = end;
+        for (int i = start; i < end; i++)
+            wheel.schedule(i, this.creationTime[i], this.creationTime[i] + lifetime);
+        return start;
+    }
+
+    /**
+     * Copies the state of a Particle object to the end of the store.
+     *
+     * @param particle The particle to add.
+     * @return The index of the new particle.
+     */
+    public int add(Particle particle) {
+        return add(particle, 0);
+    }
+
+    /**
+     * Copies the state of a Particle object to the end of the store, in the given group.
+     *
+     * @param particle The particle to add.
+     * @param group    The group number, such as the index of the tube that fired the particle.
+     * @return The index of the new particle.
+     */
+    public int add(Particle particle, int group) {
+        byte particleType;
+        if (particle instanceof Star)
+            particleType = STAR;
+        else if (particle instanceof LaunchSpark)
+            particleType = LAUNCH_SPARK;
+        else
+            particleType = SPARK;
+        return add(particleType, particle.getCreationTime(), particle.getX(), particle.getY(),
+                particle.getVelocityX(), particle.getVelocityY(), particle.getLifetime(),
+                particle.getColor(), group);
+    }
+
+    /**
+     * Removes the particle at the given index.  Particles after it move down by one place, so
+     * removeExpired should be used to remove many particles at once.
+     *
+     * @param index The index of the particle to remove.
+     */
+    public void remove(int index) {
+        typeCount[type[index]]--;
+        wheel.unschedule(index);
+        int numMoved = size - index - 1;
+        if (numMoved > 0) {
+            System.arraycopy(x, index + 1, x, index, numMoved);
+            System.arraycopy(y, index + 1, y, index, numMoved);
+            System.arraycopy(vx, index + 1, vx, index, numMoved);
+            System.arraycopy(vy, index + 1, vy, index, numMoved);
+            System.arraycopy(creationTime, index + 1, creationTime, index, numMoved);
+            System.arraycopy(lifetime, index + 1, lifetime, index, numMoved);
+            System.arraycopy(type, index + 1, type, index, numMoved);
+            System.arraycopy(color, index + 1, color, index, numMoved);
+            System.arraycopy(step, index + 1, step, index, numMoved);
+            System.arraycopy(group, index + 1, group, index, numMoved);
+            for (int i = index; i < size - 1; i++)
+                wheel.move(i + 1, i);
+        }
+        size--;
+    }
+
+    /**
+     * Removes every particle whose lifetime is over at the supplied time.  The dead particles are
+     * found on the expiry wheel, so only the particles due since the last call are looked at.  When
+     * the order of the particles is kept, each survivor after the first dead particle is moved down
+     * over the gaps.  Otherwise each dead particle is replaced by the last live particle, so only the
+     * dead particles are touched.
+     *
+     * @param time          The absolute time in seconds.
+     * @param preserveOrder Whether the survivors must stay in the order they were added.
+     * @return The number of particles removed.
+     */
+    public int removeExpired(double time, boolean preserveOrder) {
+        int numDead = wheel.collect(time, this);
+        if (numDead == 0)
+            return 0;
+        int[] dead = wheel.getDead();
+        for (int k = 0; k < numDead; k++) {
+            expired[dead[k]] = true;
+            typeCount[type[dead[k]]]--;
+        }
+        removeMarked(dead, numDead, wheel.getFirstDead(), preserveOrder);
+        return numDead;
+    }
+
+    /**
+     * Retires every particle that can never come back into a viewport, before its lifetime is over,
+     * so it is neither moved nor drawn again.  This looks at every particle, but only at its position
+     * and velocity, which costs far less than moving it.  The number retired and the lifetime they
+     * had left are added to the totals given by getRetiredCount and getRetiredLifetime.
+     *
+     * @param viewport      The part of the world that is shown.
+     * @param wind          The wind velocity in m/sec, which is assumed to hold from now on.
+     * @param time          The absolute time in seconds.
+     * @param preserveOrder Whether the survivors must stay in the order they were added.
+     * @return The number of particles removed.
+     */
+    public int removeOutside(Viewport viewport, double wind, double time, boolean preserveOrder) {
+        int numRetired = 0;
+        for (int i = 0; i < size; i++) {
+            if (viewport.canReturn(x[i], y[i], vx[i], vy[i], wind))
+                continue;
+            if (numRetired == retiring.length)
+                retiring = Arrays.copyOf(retiring, numRetired * 2);
+            retiring[numRetired++] = i;
+            expired[i] = true;
+            typeCount[type[i]]--;
+            wheel.unschedule(i);
+            retiredLifetime += Math.max(creationTime[i] + lifetime[i] - time, 0);
+        }
+        if (numRetired == 0)
+            return 0;
+        retiredCount += numRetired;
+        removeMarked(retiring, numRetired, retiring[0], preserveOrder);
+        return numRetired;
+    }
+
+    /**
+     * An accessor for the number of particles retired by removeOutside since the store was created.
+     *
+     * @return The number of particles.
+     */
+    public long getRetiredCount() {
+        return retiredCount;
+    }
+
+    /**
+     * An accessor for the lifetime the particles retired by removeOutside had left, added up since
+     * the store was created.  This is the simulated time for which particles were not moved, so
+     * divided by the time step it gives the particle updates saved.
+     *
+     * @return The total lifetime in seconds.
+     */
+    public double getRetiredLifetime() {
+        return retiredLifetime;
+    }
+
+    // Removes the marked particles, given by a list of their indices, and clears the marks.  When the
+    // order is kept, each survivor after the first marked particle is moved down over the gaps.
+    // Otherwise each marked particle is replaced by the last live particle.
+    private void removeMarked(int[] dead, int numDead, int firstDead, boolean preserveOrder) {
+        if (preserveOrder) {
+            int kept = firstDead;
+            for (int i = kept; i < size; i++) {
+                if (expired[i])
+                    expired[i] = false;
+                else
+                    move(i, kept++);
+            }
+            size = kept;
+        } else {
+            for (int k = 0; k < numDead; k++) {
+                int i = dead[k];
+                if (!expired[i])
+                    continue;    // Already dropped from the end.
+                while (size > 0 && expired[size - 1]) {
+                    expired[size - 1] = false;
+                    size--;
+                }
+                if (i < size) {
+                    expired[i] = false;
+                    size--;
+                    move(size, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells whether the lifetime of a particle is over.
+     *
+     * @param index The index of the particle.
+     * @param time  The absolute time in seconds.
+     * @return True if the particle has expired.
+     */
+    boolean isExpired(int index, double time) {
+        return time - creationTime[index] >= lifetime[index];
+    }
+
+    /**
+     * Returns the index of the first particle of the given type.
+     *
+     * @param type The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @return The index of the particle, or -1 if there is no particle of that type.
+     */
+    public int indexOf(byte type) {
+        for (int i = 0; i < size; i++) {
+            if (this.type[i] == type)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of particles of the given type.  The count is kept up to date as particles
+     * are added and removed, so this takes constant time.
+     *
+     * @param type The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @return The number of particles of that type.
+     */
+    public int count(byte type) {
+        return typeCount[type];
+    }
+
+    /**
+     * Removes all particles from the store.
+     */
+    public void clear() {
+        size = 0;
+        Arrays.fill(typeCount, 0);
+        wheel.clear();
+    }
+
+    /**
+     * Returns a copy of the store, trimmed to its current size.
+     *
+     * @return A new ParticleStore holding the same particles.
+     */
+    public ParticleStore copy() {
+        ParticleStore copy = new ParticleStore(size);
+        System.arraycopy(x, 0, copy.x, 0, size);
+        System.arraycopy(y, 0, copy.y, 0, size);
+        System.arraycopy(vx, 0, copy.vx, 0, size);
+        System.arraycopy(vy, 0, copy.vy, 0, size);
+        System.arraycopy(creationTime, 0, copy.creationTime, 0, size);
+        System.arraycopy(lifetime, 0, copy.lifetime, 0, size);
+        System.arraycopy(type, 0, copy.type, 0, size);
+        System.arraycopy(color, 0, copy.color, 0, size);
+        System.arraycopy(step, 0, copy.step, 0, size);
+        System.arraycopy(group, 0, copy.group, 0, size);
+        copy.size = size;
+        System.arraycopy(typeCount, 0, copy.typeCount, 0, typeCount.length);
+        for (int i = 0; i < size; i++)
+            copy.wheel.schedule(i, creationTime[i], creationTime[i] + lifetime[i]);
+        copy.wind = wind;
+        System.arraycopy(solvers, 0, copy.solvers, 0, solvers.length);
+        copy.tolerance = tolerance;
+        return copy;
+    }
+
+    /**
+     * An accessor for the number of particles in the store.
+     *
+     * @return The number of particles.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getVelocityX(int index) {
+        return vx[index];
+    }
+
+    public double getVelocityY(int index) {
+        return vy[index];
+    }
+
+    public double getCreationTime(int index) {
+        return creationTime[index];
+    }
+
+    public double getLifetime(int index) {
+        return lifetime[index];
+    }
+
+    /**
+     * An accessor for the particle type.
+     *
+     * @param index The index of the particle.
+     * @return STAR, SPARK or LAUNCH_SPARK.
+     */
+    public byte getType(int index) {
+        return type[index];
+    }
+
+    /**
+     * An accessor for the particle color.
+     *
+     * @param index The index of the particle.
+     * @return The Palette index of the color.
+     */
+    public int getColor(int index) {
+        return color[index];
+    }
+
+    /**
+     * An accessor for the group a particle belongs to.
+     *
+     * @param index The index of the particle.
+     * @return The group number, which is 0 unless the particle was added to a group.
+     */
+    public int getGroup(int index) {
+        return group[index];
+    }
+
+    /**
+     * Return the render size of a particle.
+     *
+     * @param index The index of the particle.
+     * @return The render size in pixels.
+     */
+    public int getRenderSize(int index) {
+        return type[index] == STAR ? 6 : 2;
+    }
+
+    /**
+     * Returns the mass of a particle at the given age.
+     *
+     * @param index The index of the particle.
+     * @param age   The time since the particle was created, in seconds.
+     * @return The mass in kg.
+     */
+    public double getMass(int index, double age) {
+        if (type[index] == STAR)
+            return Star.BURN_TABLE.getMass(age);
+        return Spark.MASS;
+    }
+
+    /**
+     * Returns the radius of a particle at the given age.
+     *
+     * @param index The index of the particle.
+     * @param age   The time since the particle was created, in seconds.
+     * @return The radius in metres.
+     */
+    public double getRadius(int index, double age) {
+        switch (type[index]) {
+            case STAR:
+                return Star.BURN_TABLE.getRadius(age);
+            case LAUNCH_SPARK:
+                return LaunchSpark.RADIUS;
+            default:
+                return Spark.RADIUS;
+        }
+    }
+
+    /**
+     * Returns the area a particle presents to the air at the given age.
+     *
+     * @param index The index of the particle.
+     * @param age   The time since the particle was created, in seconds.
+     * @return The drag area in m*m.
+     */
+    public double getDragArea(int index, double age) {
+        if (type[index] == STAR)
+            return Star.BURN_TABLE.getDragArea(age);
+        double radius = getRadius(index, age);
+        return Math.PI * radius * radius;
+    }
+
+    /**
+     * A mutator for the wind velocity used by the drag equations.
+     *
+     * @param wind The wind velocity in m/sec.
+     */
+    public void setWind(double wind) {
+        this.wind = wind;
+    }
+
+    /**
+     * A mutator for the solver used by updatePositions for every type of particle.
+     *
+     * @param solver The solver.
+     */
+    public void setSolver(Solver solver) {
+        Arrays.fill(solvers, solver);
+    }
+
+    /**
+     * A mutator for the solver used by updatePositions for one type of particle.
+     *
+     * @param type   The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @param solver The solver.
+     */
+    public void setSolver(byte type, Solver solver) {
+        solvers[type] = solver;
+    }
+
+    /**
+     * An accessor for the solver used for a type of particle.
+     *
+     * @param type The type index: STAR, SPARK or LAUNCH_SPARK.
+     * @return The solver.
+     */
+    public Solver getSolver(byte type) {
+        return solvers[type];
+    }
+
+    /**
+     * A mutator for the error tolerance of the DormandPrinceSolver.
+     *
+     * @param tolerance The largest error allowed in each step, relative to the size of the values plus one.
+     */
+    public void setTolerance(double tolerance) {
+        if (tolerance <= 0)
+            throw new IllegalArgumentException("Tolerance must be positive: " + tolerance);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Updates the velocities and positions of a range of particles with the solver chosen for each
+     * type.  With the RungeKuttaSolver this is done in the same way as Particle.updatePosition.  Each
+     * run of neighbouring particles that share a solver is advanced as one batch.  Separate ranges may
+     * be updated at the same time by different threads, as long as the workspace has already been
+     * grown to the size of the store.
+     *
+     * @param from      The index of the first particle.
+     * @param to        One past the index of the last particle.
+     * @param time      The current time in seconds.
+     * @param deltaTime The time interval in seconds.
+     * @param workspace The scratch buffers for the solver.
+     * @return The number of function evaluations made, counting each particle separately.
+     */
+    public long updatePositions(int from, int to, double time, double deltaTime,
+                                RungeKuttaSolver.Workspace workspace) {
+        if (solvers[STAR] == solvers[SPARK] && solvers[SPARK] == solvers[LAUNCH_SPARK])
+            return advance(solvers[STAR], from, to, time, deltaTime, workspace);
+        long evaluations = 0;
+        int start = from;
+        while (start < to) {
+            Solver solver = solvers[type[start]];
+            int end = start + 1;
+            while (end < to && solvers[type[end]] == solver)
+                end++;
+            evaluations += advance(solver, start, end, time, deltaTime, workspace);
+            start = end;
+        }
+        return evaluations;
+    }
+
+    public void getFunction(int from, int to, double time, double[] vx, double[] vy, double[] fx, double[] fy) {
+        for (int i = from; i < to; i++) {
+            double age = time - creationTime[i];
+            // Use apparent x velocity to calculate drag.
+            double vxa = vx[i] - wind;
+            double velocityMag = Math.sqrt(vxa * vxa + vy[i] * vy[i]);
+            if (velocityMag == 0) {
+                // At rest in the air there is no drag, and the drag's direction would be 0 / 0.
+                fx[i] = 0;
+                fy[i] = -Environment.G;
+                continue;
+            }
+            double mass = getMass(i, age);
+            double area = getDragArea(i, age);
+            double dragForce = Environment.DENSITY_AIR * velocityMag * velocityMag * area * Particle.DRAG_COEFF / 2;
+            fx[i] = -dragForce * vxa / (mass * velocityMag);
+            fy[i] = -Environment.G - dragForce * vy[i] / (mass * velocityMag);
+        }
+    }
+
+    // Advances a range of particles with one solver, returning the number of function evaluations.
+    private long advance(Solver solver, int from, int to, double time, double deltaTime,
+                         RungeKuttaSolver.Workspace workspace) {
+        switch (solver) {
+            case DORMAND_PRINCE:
+                return DormandPrinceSolver.advance(this, x, y, vx, vy, step, from, to, time, deltaTime,
+                        tolerance, workspace);
+            case SEMI_IMPLICIT_EULER:
+                EulerSolver.advance(this, x, y, vx, vy, from, to, time, deltaTime, workspace);
+                return to - from;
+            case EXACT_DRAG:
+                advanceExactDrag(from, to, time, deltaTime);
+                return to - from;
+            default:
+                RungeKuttaSolver.advance(this, x, y, vx, vy, from, to, time, deltaTime, workspace);
+                return 4L * (to - from);
+        }
+    }
+
+    // Solves dv/dt = -c (v - w) + g exactly over the time interval, where w is the wind and the drag
+    // coefficient c = k |v - w| is held at its value at the start of the interval.  The velocity
+    // relaxes towards the terminal velocity as exp(-c t), and the position is its integral.
+    private void advanceExactDrag(int from, int to, double time, double deltaTime) {
+        for (int i = from; i < to; i++) {
+            double age = time - creationTime[i];
+            double vxa = vx[i] - wind;
+            double velocityMag = Math.sqrt(vxa * vxa + vy[i] * vy[i]);
+            double c = Environment.DENSITY_AIR * velocityMag * getDragArea(i, age) * Particle.DRAG_COEFF
+                    / (2 * getMass(i, age));
+            double ch = c * deltaTime;
+            double decay;    // exp(-c t)
+            double growth;    // the integral of exp(-c t) over the interval
+            double settle;    // the integral of (1 - exp(-c t)) / c over the interval
+            if (ch < 1e-3) {
+                // Use the series, which does not lose precision as c goes to zero.
+                decay = 1 - ch + ch * ch / 2;
+                growth = deltaTime * (1 - ch / 2 + ch * ch / 6);
+                settle = deltaTime * deltaTime / 2 * (1 - ch / 3 + ch * ch / 12);
+            } else {
+                decay = Math.exp(-ch);
+                growth = (1 - decay) / c;
+                settle = (deltaTime - growth) / c;
+            }
+            x[i] += wind * deltaTime + vxa * growth;
+            y[i] += vy[i] * growth - Environment.G * settle;
+            vx[i] = wind + vxa * decay;
+            vy[i] = vy[i] * decay - Environment.G * growth;
+        }
+    }
+
+    // Copies the particle at one index over the particle at another.
+    private void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        vx[to] = vx[from];
+        vy[to] = vy[from];
+        creationTime[to] = creationTime[from];
+        lifetime[to] = lifetime[from];
+        type[to] = type[from];
+        color[to] = color[from];
+        step[to] = step[from];
+        group[to] = group[from];
+        wheel.move(from, to);
+    }
+
+    // Grows the arrays so they can hold at least the given number of particles.
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length)
+            return;
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        vx = Arrays.copyOf(vx, newCapacity);
+        vy = Arrays.copyOf(vy, newCapacity);
+        creationTime = Arrays.copyOf(creationTime, newCapacity);
+        lifetime = Arrays.copyOf(lifetime, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        color = Arrays.copyOf(color, newCapacity);
+        step = Arrays.copyOf(step, newCapacity);
+        group = Arrays.copyOf(group, newCapacity);
+        expired = Arrays.copyOf(expired, newCapacity);
+        wheel.ensureCapacity(newCapacity);
+    }
+}
@@ -0,0 +1,92 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves every particle in a store by one time interval.  Once the number of particles reaches the
+ * parallel threshold, they are moved in chunks across a ForkJoinPool.  Each particle only depends on
+ * its own state, so the result is the same whether or not the update runs in parallel.
+ *
+ * @version 1.0
+ */
+class PositionUpdater {
+
+    /**
+     * The default number of particles at which updates start to run in parallel.
+     */
+    final static int DEFAULT_PARALLEL_THRESHOLD = 10000;
+    // The smallest number of particles updated by one parallel task.
+    private final static int MIN_CHUNK_SIZE = 2048;
+
+    private final RungeKuttaSolver.Workspace workspace = new RungeKuttaSolver.Workspace();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    // The number of function evaluations made by the solver, counting each particle separately.
+    private final LongAdder evaluations = new LongAdder();
+
+    /**
+     * Moves the particles in a store.
+     *
+     * @param store     The particles.
+     * @param wind      The wind velocity in m/sec.
+     * @param time      The current absolute time in seconds.
+     * @param deltaTime The time interval in seconds.
+     */
+    void update(ParticleStore store, double wind, double time, double deltaTime) {
+        int size = store.size();
+        store.setWind(wind);
+        // Grow the workspace here, so the parallel tasks only ever read it.
+        workspace.ensureCapacity(size);
+        if (size < parallelThreshold || pool.getParallelism() < 2) {
+            evaluations.add(store.updatePositions(0, size, time, deltaTime, workspace));
+        } else {
+            int chunkSize = Math.max(MIN_CHUNK_SIZE, size / (4 * pool.getParallelism()));
+            pool.invoke(new UpdateTask(store, 0, size, chunkSize, time, deltaTime));
+        }
+    }
+
+    void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    // Updates the positions of a range of particles, splitting it in half until it is no
+    // bigger than the chunk size.
+    private class UpdateTask extends RecursiveAction {
+
+        private final ParticleStore store;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final double time;
+        private final double deltaTime;
+
+        UpdateTask(ParticleStore store, int from, int to, int chunkSize, double time, double deltaTime) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.time = time;
+            this.deltaTime = deltaTime;
+        }
+
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                evaluations.add(store.updatePositions(from, to, time, deltaTime, workspace));
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UpdateTask(store, from, middle, chunkSize, time, deltaTime),
+                        new UpdateTask(store, middle, to, chunkSize, time, deltaTime));
+            }
+        }
+    }
+}
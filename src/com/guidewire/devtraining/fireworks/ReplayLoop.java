@@ -0,0 +1,153 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a FrameRecording on its own thread in place of a SimulationLoop, publishing the recorded
+ * frame for the current playback time to a FrameBuffer, from which the renderer takes it as usual.
+ * No physics are run, so a long show can be reviewed, and moved around in with seek, at the cost of
+ * reading its frames.
+ * <p>
+ * Only the replay thread moves the playback time.  A seek leaves the new time in a single pending
+ * slot, which the loop takes at the top of its next pass, so a seek can never be lost to, or mixed
+ * with, the loop playing on.
+ *
+ * @version 1.1
+ */
+public class ReplayLoop implements Runnable {
+
+    // How often the loop checks for a new frame to publish.
+    private final static double FRAME_TIME = 1.0 / 60;    // seconds
+
+    private final FrameRecording recording;
+    private final FrameBuffer frames = new FrameBuffer();
+    private Runnable finishedListener;
+    private Thread thread;
+    private volatile boolean running;
+    // Changed only by the replay thread once it has started.
+    private volatile double time;        // seconds
+    // The time of the latest seek not yet taken by the loop, or null.
+    private final AtomicReference<Double> pendingSeek = new AtomicReference<>();
+
+    /**
+     * The ReplayLoop constructor.  Playback starts from the first frame.
+     *
+     * @param recording The recording to replay.
+     */
+    public ReplayLoop(FrameRecording recording) {
+        this.recording = recording;
+        time = recording.getStartTime();
+    }
+
+    /**
+     * A mutator for the listener told when the end of the recording is reached.  The listener is
+     * called on the replay thread, after which the loop stops.
+     *
+     * @param finishedListener The listener, or null for none.
+     */
+    public void setFinishedListener(Runnable finishedListener) {
+        this.finishedListener = finishedListener;
+    }
+
+    /**
+     * Moves playback to the given time.  The frame for the time is published straight away if the
+     * loop is running, and otherwise when it is started.
+     *
+     * @param time The absolute time in seconds.
+     */
+    public void seek(double time) {
+        pendingSeek.set(Math.max(recording.getStartTime(), Math.min(time, recording.getEndTime())));
+        Thread current = thread;
+        if (current != null)
+            LockSupport.unpark(current);
+    }
+
+    /**
+     * Starts the loop on a new thread, if it is not running already.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        thread = new Thread(this, "Fireworks replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop, waiting for the frame in progress to be published.  The loop can be started again.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread == null || thread == Thread.currentThread())
+            return;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs the loop until it is stopped or the recording ends.  Call start rather than calling this
+     * directly.
+     */
+    public void run() {
+        // The frame last published, or -1 to publish whatever frame comes up next.
+        int published = -1;
+        while (running) {
+            long start = System.nanoTime();
+            Double seekTime = pendingSeek.getAndSet(null);
+            if (seekTime != null)
+                time = seekTime;
+            int index = recording.indexOf(time);
+            if (index >= 0 && index != published) {
+                try {
+                    frames.publish(recording, index);
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                    running = false;
+                    return;
+                }
+                published = index;
+            }
+            if (time >= recording.getEndTime()) {
+                running = false;
+                if (finishedListener != null)
+                    finishedListener.run();
+                return;
+            }
+            LockSupport.parkNanos((long) (FRAME_TIME * 1e9));
+            // Play on from the frame just published.  A seek that came in meanwhile replaces the
+            // time at the top of the next pass.
+            time += (System.nanoTime() - start) / 1e9;
+        }
+    }
+
+    /**
+     * An accessor for the playback time, which is the time of the latest seek until the loop takes it.
+     *
+     * @return The absolute time in seconds.
+     */
+    public double getTime() {
+        Double seekTime = pendingSeek.get();
+        return seekTime != null ? seekTime : time;
+    }
+
+    /**
+     * An accessor for the buffer the frames are published to.
+     *
+     * @return The frame buffer.
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frames;
+    }
+}
@@ -1,6 +1,7 @@
 package com.guidewire.devtraining.fireworks;
 
 
+import javax.management.JMException;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -9,9 +10,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 
 /**
  * This class contains the window in which the Roman Candle is rendered.  This includes a GUI to
@@ -20,11 +19,21 @@ import java.util.ArrayList;
  * Possible Extra marks include the background, the tool-tips, the pause feature
  * As well as the play pause and stopButton icons used in the button.
  * <p>
- * There are two threads in this animation: clock and painter.
- * The clock thread calculates the particles position, updating the fireworks array
- * The painter thread draws the images on the screen.  Having these threads seperately allows
+ * There are two threads in this animation: the simulation loop and the painter.
+ * The simulation loop calculates the particles position with a fixed time step, publishing a frame of
+ * the fireworks.  The painter thread draws the images on the screen.  Having these threads seperately allows
  * for the animation to stopButton running, but allowing to adjust the windspeed or launch angle while
  * letting the animation paint the tilting launch tube.
+ * <p>
+ * Given a FrameRecording, the window replays it instead, with a ReplayLoop in place of the simulation
+ * loop and a slider to move to any time in the show.
+ * <p>
+ * The tick and paint times, particle counts and dropped frames are published as SimulationMetrics,
+ * which can be watched over JMX, for example in JConsole, along with the particles retired early and
+ * skipped by the renderer because they were out of view.
+ * <p>
+ * The tick and paint times are also recorded to a ParticleBudget, which thins out the sparks when
+ * the frames are at risk of missing the paint interval.
  **/
 public class RomanCandleWindow extends JFrame {
 
@@ -42,7 +51,11 @@ public class RomanCandleWindow extends JFrame {
     private final int MAX_HEIGHT = 1080;
     BufferedImage image;
     Timer painter;
-    Timer clock;
+    SimulationLoop loop;
+    ReplayLoop replay;
+    JSlider timeSlider;
+    // Set while the painter moves the slider, so the move is not taken as a seek.
+    boolean updatingSlider;
     boolean running;
     boolean begin;
     JButton playButton;
@@ -56,15 +69,29 @@ public class RomanCandleWindow extends JFrame {
     ImageIcon stopIcon;
     double wind;
     double launchAngle;
-    ArrayList<Particle> fireworks = null;
     int timeInterval = 1000 / 60;        // 60 fps
-    double time;
     ParticleManager manager = null;
-    private Graphics2D graphic;
+    SimulationMetrics metrics = new SimulationMetrics();
+    ParticleBudget budget = new ParticleBudget();
+    private FrameRenderer renderer;
+    // The part of the world the painter shows, which the simulation retires particles outside of, and
+    // the size of the image it is found from.
+    private Viewport viewport;
+    private int imageWidth;        // pixels
+    private int imageHeight;    // pixels
     private ImagePanel imagePanel;
     private JPanel buttonBar;
 
     public RomanCandleWindow() {
+        this(null);
+    }
+
+    /**
+     * A RomanCandleWindow constructor that replays a recorded show rather than simulating one.
+     *
+     * @param recording The recording to replay, or null to simulate the show.
+     */
+    public RomanCandleWindow(FrameRecording recording) {
         super();
         //Window Properties
         begin = true;
@@ -126,18 +153,42 @@ public class RomanCandleWindow extends JFrame {
         imagePanel.setToolTipText("ToolTips all around for extra marks?");
         add(imagePanel, BorderLayout.CENTER);
 
+        if (recording != null) {
+            // Seek in tenths of a second.  The tubes are drawn as they were recorded, so the launch
+            // angle set here is ignored.
+            replay = new ReplayLoop(recording);
+            timeSlider = new JSlider((int) (recording.getStartTime() * 10), (int) Math.ceil(recording.getEndTime() * 10),
+                    (int) (recording.getStartTime() * 10));
+            timeSlider.setToolTipText("Replay time");
+            timeSlider.addChangeListener(new SeekListener());
+            buttonBar.add(timeSlider);
+            windVelSpinner.setEnabled(false);
+            tiltSpinner.setEnabled(false);
+            replay.setFinishedListener(() -> SwingUtilities.invokeLater(this::reset));
+        }
+
+        budget.setDeadline(timeInterval * 1_000_000L);
+        metrics.setBudget(budget);
+        try {
+            metrics.register();
+        } catch (JMException except) {
+            System.out.println(except.getMessage());
+        }
+
         //Setting up Threads
-        clock = new Timer(timeInterval, new ClockListener());
         painter = new Timer(timeInterval, new PaintListener());
         running = false;
-        reset();    //Stops clock thread and resets Particle Manager and Button statuses
+        reset();    //Stops simulation loop and resets Particle Manager and Button statuses
         painter.start();
     }
 
     //Pauses the animation, allowing it to resume later
     private void pause() {
         begin = false;
-        clock.stop();
+        if (replay != null)
+            replay.stop();
+        else
+            loop.stop();
         playButton.setText("Start");
         playButton.setIcon(playIcon);
         running = false;
@@ -146,8 +197,10 @@ public class RomanCandleWindow extends JFrame {
     //Resumes the animation
     private void resume() {
         begin = false;
-        fireworks = manager.getFireworks(time);
-        clock.start();
+        if (replay != null)
+            replay.start();
+        else
+            loop.start();
         playButton.setText(PAUSE_TEXT);
         playButton.setIcon(pauseIcon);
         running = true;
@@ -155,19 +208,38 @@ public class RomanCandleWindow extends JFrame {
 
     //Starts the particle manager
     private void start() {
-        manager.start(time);
+        if (replay == null)
+            manager.start(loop.getTime());
     }
 
     //Clears all stars on screen and resets the buttons
     private void reset() {
-        clock.stop();
-        time = 0;
+        if (loop != null)
+            loop.stop();
         begin = true;
         running = false;
         playButton.setText(START_TEXT);
         playButton.setIcon(playIcon);
+        if (replay != null) {
+            // Go back to the start of the recording.
+            replay.stop();
+            replay.seek(Double.NEGATIVE_INFINITY);
+            return;
+        }
         try {
             manager = new ParticleManager(wind, launchAngle);
+            manager.setMetrics(metrics);
+            manager.setViewport(viewport);
+            // Each show starts at the full emission level.
+            budget.reset();
+            manager.setBudget(budget);
+            SimulationLoop newLoop = new SimulationLoop(manager, 0);
+            // When all of the stars are finished, reset the animation, unless it has been reset already.
+            newLoop.setFinishedListener(() -> SwingUtilities.invokeLater(() -> {
+                if (loop == newLoop)
+                    reset();
+            }));
+            loop = newLoop;
         } catch (EnvironmentException | EmitterException except) {
             System.out.println(except.getMessage());
         }
@@ -176,115 +248,16 @@ public class RomanCandleWindow extends JFrame {
     //Stops all threads and disposes of the graphic and flushes the image before
     //Exiting the program.  Called by the Exit button and the window's closes "X" button
     private void close() {
-        if (clock.isRunning())
-            clock.stop();
+        if (loop != null)
+            loop.stop();
+        if (replay != null)
+            replay.stop();
         if (painter.isRunning())
             painter.stop();
-        graphic.dispose();
-        image.flush();
+        renderer.dispose();
         System.exit(0);
     }
 
-    /**
-     * Used to scale a array or 2 doubles from meters to pixels using the window's width and height
-     * The height of the window is always 22m.  Returned is the position in pixels
-     *
-     * @param width  width of the display
-     * @param height height of the display
-     * @param pos    position of the visible item
-     * @return scaled position
-     */
-    private Point positionScale(int width, int height, Point2D.Double pos) {
-        double convert = height / 22.0;    //px/m
-        return new Point((int) (pos.x * convert + width / 2.0), (int) (height - pos.y * convert));
-    }
-
-    /**
-     * Draw a star as an circle based on its size and color.  Uses positionScale to calculate
-     * the position in pixels, as well as having an offset for the star to line it up with the launch tube's
-     * tip (endX) upon launch
-     *
-     * @param posX starting x
-     * @param posY starting y
-     * @param endX ending x
-     * @param star object to draw
-     */
-    private void drawStar(int posX, int posY, int endX, Particle star) {
-        int size = star.getRenderSize();
-        graphic.setColor(translateColor(star.getColor()));
-        graphic.fillOval(posX - size / 2 + endX, posY - size / 2, size, size);
-    }
-
-    /**
-     * Draw the launchTube as a series of 10 lines stacked side by side with a gradient.
-     * Multiple lines are used as it is easier to draw a line on a slant than a rectangle.
-     * Returns the tip of the launch tube's x position in pixels.
-     *
-     * @param width  width of the display
-     * @param height height of the display
-     * @return tip of the launch tube's position in pixels
-     */
-    private int drawLaunchTube(int width, int height) {
-        int LAUNCH_TUBE_CONVERT = 22;
-        int size = imagePanel.getHeight() / LAUNCH_TUBE_CONVERT;
-        int posY = (int) (size * Math.cos(Math.toRadians(launchAngle)));
-        int posX = (int) (size * Math.sin(Math.toRadians(launchAngle)));
-        graphic.setPaint(new GradientPaint(0, height - size, Color.BLUE, 0, height, Color.GREEN));
-        for (int i = 0; i < 10; i++) {
-            graphic.drawLine(width / 2 - 5 + i, height, width / 2 + posX - 5 + i, height - posY);
-        }
-        return posX;
-    }
-
-    //Draws a launch spark as a line according to it's color
-    private void drawLaunchSpark(int posX, int posY, Particle spark) {
-        int size = spark.getRenderSize();
-        graphic.setColor(translateColor(spark.getColor()));
-        graphic.drawLine(posX, posY, posX + size, posY + size);
-    }
-
-//    private Color translateColor(String color, int alpha) {
-//        Color result = translateColor(color);
-//        return new Color(result.getRed()
-//                , result.getGreen()
-//                , result.getBlue()
-//                , 255);
-//    }
-
-    //Translates a string containing a color to its appropriate color object
-    private Color translateColor(String color) {
-        Color returnColor;
-        switch (color.toLowerCase()) {
-            case "blue":
-                returnColor = Color.BLUE;
-                break;
-            case "green":
-                returnColor = Color.GREEN;
-                break;
-            case "orange":
-                returnColor = Color.ORANGE;
-                break;
-            case "red":
-                returnColor = Color.RED;
-                break;
-            case "yellow":
-                returnColor = Color.YELLOW;
-                break;
-            case "white":
-                returnColor = Color.WHITE;
-                break;
-            case "cyan":
-                returnColor = Color.CYAN;
-                break;
-            case "magenta":
-                returnColor = Color.MAGENTA;
-                break;
-            default:
-                returnColor = Color.BLACK;
-        }
-        return returnColor;
-    }
-
     //Used by the exit button to launch the close method which exits the program while stopping all threads
     private class ExitListener implements ActionListener {
         public ExitListener() {
@@ -313,7 +286,6 @@ public class RomanCandleWindow extends JFrame {
     private class StopListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             reset();
-            fireworks = new ArrayList<>();
         }
     }
 
@@ -324,26 +296,6 @@ public class RomanCandleWindow extends JFrame {
         }
     }
 
-    /**
-     * Thread that updates the fireworks array once per frame and advances
-     * the time by the same amount. If the manager is completed firing all
-     * 8 fireworks, reset the animation
-     */
-    private class ClockListener implements ActionListener {
-        public ClockListener() {
-            super();
-        }
-
-        public void actionPerformed(ActionEvent e) {
-            if (!manager.checkIfFinished()) {
-                fireworks = manager.getFireworks(time);
-                time += timeInterval / 1000.0;
-            } else {
-                reset();
-            }
-        }
-    }
-
     /**
      * Paints the animation every frame, layer by layer.
      * <p>1) Background
@@ -353,33 +305,52 @@ public class RomanCandleWindow extends JFrame {
     private class PaintListener implements ActionListener {
         final int width = Math.max(imagePanel.getWidth(), 800);
         final int height = Math.max(imagePanel.getHeight(), 600);
-        ImageIcon background = new ImageIcon(
-                Utilities.getBufferedImageFromRelativePathToClass(BACKGROUND_IMAGE, this.getClass()));
 
         public PaintListener() {
             super();
+            renderer = new FrameRenderer(
+                    Utilities.getBufferedImageFromRelativePathToClass(BACKGROUND_IMAGE, this.getClass()));
+            imageWidth = width;
+            imageHeight = height;
+            viewport = Viewport.forImage(width, height, launchAngle);
         }
 
         public void actionPerformed(ActionEvent e) {
-            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            graphic = image.createGraphics();
-            graphic.drawImage(background.getImage(), 0, 0, width, height, null);    //Draw background
-            int endX = drawLaunchTube(width, height);        //Draw LaunchTube
-            if (fireworks != null && fireworks.size() != 0) {
-                for (Particle firework : fireworks) {
-                    Point pixelPos = positionScale(width, height, firework.getPosition());
-                    if (firework instanceof LaunchSpark) {
-                        drawLaunchSpark(pixelPos.x, pixelPos.y, firework);
-                    } else {
-                        drawStar(pixelPos.x, pixelPos.y, endX, firework);
-                    }
-                }
+            long start = System.nanoTime();
+            PaintEvent event = new PaintEvent();
+            event.begin();
+            FrameBuffer frames = replay != null ? replay.getFrameBuffer()
+                    : manager != null ? manager.getFrameBuffer() : null;
+            Frame frame = frames != null ? frames.acquire() : null;
+            if (timeSlider != null && !timeSlider.getValueIsAdjusting()) {
+                updatingSlider = true;
+                timeSlider.setValue((int) (replay.getTime() * 10));
+                updatingSlider = false;
+            }
+            image = replay != null ? renderer.render(frame, width, height, imagePanel.getHeight())
+                    : renderer.render(frame, width, height, imagePanel.getHeight(), launchAngle);
+            long end = System.nanoTime();
+            metrics.recordPaint(start, end, timeInterval * 1_000_000L, renderer.getLastCulled());
+            budget.recordPaint(end - start);
+            if (event.shouldCommit()) {
+                event.frameTime = frame != null ? frame.getTime() : Double.NaN;
+                event.particles = frame != null ? frame.size() : 0;
+                event.replay = replay != null;
+                event.commit();
             }
             imagePanel.repaint();
             buttonBar.repaint();
         }
     }
 
+    //Used by the time slider to move the replay to the chosen time
+    private class SeekListener implements ChangeListener {
+        public void stateChanged(ChangeEvent e) {
+            if (!updatingSlider)
+                replay.seek(timeSlider.getValue() / 10.0);
+        }
+    }
+
     //Used by the WindVel spinner to update the managers wind velocity upon value change
     private class WindListener implements ChangeListener {
         public WindListener() {
@@ -389,11 +360,14 @@ public class RomanCandleWindow extends JFrame {
         public void stateChanged(ChangeEvent e) {
             wind = windSpinModel.getNumber().intValue();
             if (manager != null) {
-                try {
-                    manager.setWindVelocity(wind);
-
-                } catch (EnvironmentException ignored) {
-                }
+                ParticleManager target = manager;
+                double newWind = wind;
+                loop.execute(() -> {
+                    try {
+                        target.setWindVelocity(newWind);
+                    } catch (EnvironmentException ignored) {
+                    }
+                });
                 buttonBar.repaint();
             }
         }
@@ -407,11 +381,20 @@ public class RomanCandleWindow extends JFrame {
 
         public void stateChanged(ChangeEvent e) {
             launchAngle = tiltSpinModel.getNumber().intValue();
+            // The particles are drawn from the tip of the tube, which moves with the angle.
+            if (viewport != null)
+                viewport = Viewport.forImage(imageWidth, imageHeight, launchAngle);
             if (manager != null) {
-                try {
-                    manager.setFiringAngle(launchAngle);
-                } catch (EmitterException ignored) {
-                }
+                ParticleManager target = manager;
+                double newAngle = launchAngle;
+                Viewport newViewport = viewport;
+                loop.execute(() -> {
+                    target.setViewport(newViewport);
+                    try {
+                        target.setFiringAngle(newAngle);
+                    } catch (EmitterException ignored) {
+                    }
+                });
                 buttonBar.repaint();
             }
         }
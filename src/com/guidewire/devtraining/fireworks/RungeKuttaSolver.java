@@ -1,9 +1,11 @@
 package com.guidewire.devtraining.fireworks;
 
+import java.awt.geom.Point2D;
+
 /**
  * A class used to solve any size system of ordinary differential equations.
  *
- * @version 1.1
+ * @version 1.2
  */
 public class RungeKuttaSolver {
 
@@ -21,18 +23,19 @@ public class RungeKuttaSolver {
      */
     public static double[] getNextPoint(ODESystem ode, double time, double deltaTime) {
         int systemSize = ode.getSystemSize();
-        double[] q1 = new double[systemSize];
-        double[] q2 = new double[systemSize];
-        double[] q3 = new double[systemSize];
-        double[] q4 = new double[systemSize];
+        double[] q1;
+        double[] q2;
+        double[] q3;
+        double[] q4;
         double[] newVals = new double[systemSize];
         double[] intermediateVals = new double[systemSize];
         double halfTime = time + deltaTime / 2;
         double fullTime = time + deltaTime;
         int valNum;
+        Point2D.Double velocity = ode.getVelocity();
         double[] values = new double[2];
-        values[0] = ode.getVelocity().x;
-        values[1] = ode.getVelocity().y;
+        values[0] = velocity.x;
+        values[1] = velocity.y;
         q1 = ode.getFunction(time, values);
         for (valNum = 0; valNum < systemSize; valNum++)
             intermediateVals[valNum] = values[valNum] + deltaTime * q1[valNum] / 2;
@@ -48,4 +51,96 @@ public class RungeKuttaSolver {
                     2 * q3[valNum] + q4[valNum]) / 6;
         return newVals;
     }
+
+    /**
+     * Advances the velocity and position of every member of a batch by one time interval, in place.
+     * The velocity is estimated in the same way as getNextPoint, and the position is then moved by the
+     * new velocity, as Particle.updatePosition does.  Nothing is allocated unless the workspace has to
+     * grow, so the same workspace should be reused from step to step.
+     *
+     * @param ode       The batch, implementing BatchODESystem, that contains the differential equations.
+     * @param x         The X positions in metres.
+     * @param y         The Y positions in metres.
+     * @param vx        The X velocity components in m/sec.
+     * @param vy        The Y velocity components in m/sec.
+     * @param from      The index of the first member to advance.
+     * @param to        One past the index of the last member to advance.
+     * @param time      The current absolute time in seconds.
+     * @param deltaTime The time interval in seconds.
+     * @param workspace The scratch buffers used for the intermediate values.
+     */
+    public static void advance(BatchODESystem ode, double[] x, double[] y, double[] vx, double[] vy,
+                               int from, int to, double time, double deltaTime, Workspace workspace) {
+        workspace.ensureCapacity(to);
+        double[] kx = workspace.kx;
+        double[] ky = workspace.ky;
+        double[] sumX = workspace.sumX;
+        double[] sumY = workspace.sumY;
+        double[] midX = workspace.midX;
+        double[] midY = workspace.midY;
+        double halfTime = time + deltaTime / 2;
+        double fullTime = time + deltaTime;
+        int i;
+
+        ode.getFunction(from, to, time, vx, vy, kx, ky);
+        for (i = from; i < to; i++) {
+            sumX[i] = kx[i];
+            sumY[i] = ky[i];
+            midX[i] = vx[i] + deltaTime * kx[i] / 2;
+            midY[i] = vy[i] + deltaTime * ky[i] / 2;
+        }
+        ode.getFunction(from, to, halfTime, midX, midY, kx, ky);
+        for (i = from; i < to; i++) {
+            sumX[i] += 2 * kx[i];
+            sumY[i] += 2 * ky[i];
+            midX[i] = vx[i] + deltaTime * kx[i] / 2;
+            midY[i] = vy[i] + deltaTime * ky[i] / 2;
+        }
+        ode.getFunction(from, to, halfTime, midX, midY, kx, ky);
+        for (i = from; i < to; i++) {
+            sumX[i] += 2 * kx[i];
+            sumY[i] += 2 * ky[i];
+            midX[i] = vx[i] + deltaTime * kx[i];
+            midY[i] = vy[i] + deltaTime * ky[i];
+        }
+        ode.getFunction(from, to, fullTime, midX, midY, kx, ky);
+        for (i = from; i < to; i++) {
+            vx[i] += deltaTime * (sumX[i] + kx[i]) / 6;
+            vy[i] += deltaTime * (sumY[i] + ky[i]) / 6;
+            x[i] += vx[i] * deltaTime;
+            y[i] += vy[i] * deltaTime;
+        }
+    }
+
+    /**
+     * The reusable scratch buffers for the batch form of the solver, which DormandPrinceSolver also
+     * uses.  The buffers are indexed in the same way as the batch, so callers that advance separate
+     * index ranges may share one workspace.
+     */
+    public static class Workspace {
+
+        double[] kx = new double[0];
+        double[] ky = new double[0];
+        double[] sumX = new double[0];
+        double[] sumY = new double[0];
+        double[] midX = new double[0];
+        double[] midY = new double[0];
+
+        /**
+         * Grows the buffers so they can hold at least the given number of members.
+         *
+         * @param capacity The number of members.
+         */
+        public void ensureCapacity(int capacity) {
+            if (capacity <= kx.length)
+                return;
+            int newCapacity = Math.max(capacity, kx.length * 2);
+            kx = new double[newCapacity];
+            ky = new double[newCapacity];
+            sumX = new double[newCapacity];
+            sumY = new double[newCapacity];
+            midX = new double[newCapacity];
+            midY = new double[newCapacity];
+        }
+    }
 }
@@ -0,0 +1,80 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * One cue of a show script: a single star fired from a tube at a given time, with the settings of the
+ * launch tube and its delay charge.  Cues are read from a script by the ShowScriptReader and played by
+ * the ShowEngine.
+ *
+ * @version 1.0
+ */
+public class ShowCue {
+
+    private final double time;            // seconds
+    private final int tube;
+    private final double launchAngle;    // degrees
+    private final double exitVelocity;    // m/sec
+    private final int color;
+    private final double variation;        // degrees
+    private final double delayTime;        // seconds
+
+    /**
+     * The ShowCue constructor.  The values are not checked here.  The ShowScriptReader checks them with
+     * the same rules as the LaunchTube.
+     *
+     * @param time         The absolute time of the cue in seconds.
+     * @param tube         The index of the tube in the script.
+     * @param launchAngle  The launch angle of the tube in degrees off the vertical.
+     * @param exitVelocity The launch velocity of the star in m/sec.
+     * @param color        The Palette index of the color of the star.
+     * @param variation    The random variation range for the launch angle in degrees.
+     * @param delayTime    How long the delay charge sparks are added after the star is launched, in seconds.
+     */
+    public ShowCue(double time, int tube, double launchAngle, double exitVelocity, int color,
+                   double variation, double delayTime) {
+        this.time = time;
+        this.tube = tube;
+        this.launchAngle = launchAngle;
+        this.exitVelocity = exitVelocity;
+        this.color = color;
+        this.variation = variation;
+        this.delayTime = delayTime;
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public int getTube() {
+        return tube;
+    }
+
+    public double getLaunchAngle() {
+        return launchAngle;
+    }
+
+    public double getExitVelocity() {
+        return exitVelocity;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    public double getVariation() {
+        return variation;
+    }
+
+    public double getDelayTime() {
+        return delayTime;
+    }
+
+    /**
+     * A simple string representation of the cue, in the form it takes in a script.
+     *
+     * @return A string containing the cue's values.
+     */
+    public String toString() {
+        return "cue " + time + " " + tube + " " + launchAngle + " " + exitVelocity + " "
+                + Palette.getName(color) + " variation=" + variation + " delay=" + delayTime;
+    }
+}
@@ -0,0 +1,77 @@
+package com.guidewire.devtraining.fireworks;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//This class plays a show script without a window, as fast as possible, and reports how fast the
+//physics ran.  The script is streamed from the file as the show plays.  Given a recording file, every
+//tick is recorded to it for FireworksDemonstration to replay.  The tick times and particle counts
+//can be watched over JMX while the show plays, as can the particles retired early once they fall
+//below the ground.
+//If the script cannot be read to the end, the show is played as far as it goes and the exit status is 1.
+//Usage: ShowDemonstration <script file> [wind km/h] [max time seconds] [time step seconds] [seed]
+//                         [recording file]
+public class ShowDemonstration {
+
+    public static void main(String[] args) {
+        // Make sure nothing tries to open a display.
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 1) {
+            System.out.println("Usage: ShowDemonstration <script file> [wind km/h] [max time seconds] "
+                    + "[time step seconds] [seed] [recording file]");
+            return;
+        }
+        int status = 0;
+        try (ShowScriptReader script = new ShowScriptReader(Files.newBufferedReader(Paths.get(args[0])))) {
+            double wind = args.length > 1 ? Double.parseDouble(args[1]) : 0;
+            double maxTime = args.length > 2 ? Double.parseDouble(args[2]) : Double.MAX_VALUE;
+            double timeStep = args.length > 3 ? Double.parseDouble(args[3]) : 1.0 / 60;
+            ShowEngine engine = new ShowEngine(wind);
+            if (args.length > 4)
+                engine.setSeed(Long.parseLong(args[4]));
+            SimulationMetrics metrics = new SimulationMetrics();
+            metrics.register();
+            engine.setMetrics(metrics);
+            double time = 0;
+            long ticks = 0;
+            int peakParticleCount = 0;
+            double wallTime;
+            try (FrameRecorder recorder = args.length > 5 ? new FrameRecorder(Paths.get(args[5])) : null) {
+                engine.setRecorder(recorder);
+                engine.play(script);
+                long startTime = System.nanoTime();
+                while (!engine.checkIfFinished() && time < maxTime) {
+                    time += timeStep;
+                    if (recorder != null)
+                        engine.tick(time);
+                    else
+                        engine.update(time);
+                    peakParticleCount = Math.max(peakParticleCount, engine.getParticleCount());
+                    ticks++;
+                }
+                wallTime = (System.nanoTime() - startTime) / 1e9;
+            }
+            System.out.printf("Played %d tubes for %.2f s in %.3f s wall time (%d ticks), peak %d particles%n",
+                    engine.getTubeCount(), time, wallTime, ticks, peakParticleCount);
+            System.out.printf("Tick median %.3f ms, 99th percentile %.3f ms, max %.3f ms; %d spawned, %d expired%n",
+                    metrics.getTickMedianMillis(), metrics.getTick99thPercentileMillis(), metrics.getTickMaxMillis(),
+                    metrics.getSpawnedTotal(), metrics.getExpiredTotal());
+            System.out.printf("Retired %d particles early, saving %.1f particle-seconds (%.0f particle updates)%n",
+                    engine.getRetiredCount(), engine.getRetiredLifetime(), engine.getRetiredLifetime() / timeStep);
+            if (engine.getScriptError() != null) {
+                System.out.println("The script stopped early: " + engine.getScriptError().getMessage());
+                status = 1;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Usage: ShowDemonstration <script file> [wind km/h] [max time seconds] "
+                    + "[time step seconds] [seed] [recording file]");
+        } catch (IOException | ShowScriptException | EnvironmentException | JMException e) {
+            System.out.println(e.getMessage());
+            status = 1;
+        }
+        if (status != 0)
+            System.exit(status);
+    }
+}
@@ -0,0 +1,610 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class runs a show of many Roman candles.  Each tube fires its stars one after the other, just as
+ * the ParticleManager does for a single candle, but the particles of every tube live in one
+ * ParticleStore, in the group of the tube that fired them, and are moved together in one pass.
+ * <p>
+ * A tube is not an object.  Its state is a few numbers held in parallel arrays indexed by tube, 69
+ * bytes in all, and one set of emitters is moved to each tube in turn as it fires.  A show of a
+ * thousand tubes needs well under 100 KB beyond its particles.
+ * <p>
+ * Tubes may also be fired by a show script.  The script is read one cue at a time while it plays, so
+ * only the next cue is held in memory, and each tube of the script is added to the show when its
+ * first cue comes up.
+ * <p>
+ * Each emitter draws on its own generator, split from one show generator, and random numbers are
+ * only drawn while particles are launched, on the calling thread.  A show given a seed is therefore
+ * the same bit for bit whether or not its updates run in parallel.
+ * <p>
+ * A FrameSink may be given every published frame, to record the show for replaying later or to
+ * export it as images.
+ * <p>
+ * Particles that have fallen below the ground, or left the viewport for good, are retired on each
+ * update without waiting for their lifetime to end.  Only the ground is known until setViewport is
+ * called.
+ * <p>
+ * Given a ParticleBudget, the cost of each update is recorded to it, and the star and delay charge
+ * sparks are scaled down by it when the show is close to missing its frame deadline.
+ * <p>
+ * Each update and each star launch is also reported as a Flight Recorder event, which costs almost
+ * nothing unless a recording is running.
+ *
+ * @version 1.15
+ */
+public class ShowEngine {
+
+    // The states of a tube.
+    private final static byte WAITING = 0;
+    private final static byte FIRING = 1;
+    private final static byte FINISHED = 2;
+    // Fired only by the cues of a show script.
+    private final static byte SCRIPTED = 3;
+    private final static double MAX_EXIT_VELOCITY = 22;    // m/sec
+    private final static double VARIATION = 2;    // degrees
+    // Delay charge sparks are added for this long after each star is launched.
+    private final static double DELAY_CHARGE_TIME = 3.5;    // seconds
+    private final static int INITIAL_TUBES = 16;
+
+    private double deltaTime;        // seconds
+    private double lastTime;        // seconds
+    private Environment env;
+    // These emitters are moved to each tube in turn.
+    private LaunchTube launcher;
+    private StarSparkEmitter starSparkEmit;
+    private LaunchSparkEmitter launchSparkEmit;
+    private DelaySparkEmitter delaySparkEmit;
+    // This store will hold the particles of every tube.
+    private ParticleStore fireworks = new ParticleStore();
+    private FrameBuffer frames = new FrameBuffer();
+    private final PositionUpdater updater = new PositionUpdater();
+    private boolean preserveOrder = true;
+    // Varies the exit velocity of the stars of tubes firing on their own.
+    private SplittableRandom random;
+    private FrameSink recorder;
+    private SimulationMetrics metrics;
+    // The number of particles after the last update, from which the number spawned since is found.
+    private int lastSize;
+    private Viewport viewport = Viewport.GROUND;
+    private ParticleBudget budget;
+    // The script being played, the next of its cues, and the show tube of each of its tubes, or -1.
+    private ShowScriptReader script;
+    private ShowCue nextCue;
+    // The error that stopped the script early, or null.
+    private Exception scriptError;
+    private int[] scriptTubes = new int[0];
+    // The colors the tubes fire in turn, outside a script.
+    private final int[] starColors = Palette.getStarColors();
+
+    // The state of the tubes, indexed by tube.
+    private int numTubes;
+    // The number of tubes still waiting or firing stars of their own.
+    private int numRunning;
+    private byte[] state;
+    private double[] tubeX;                // metre
+    private double[] tipX;                // metre
+    private double[] tipY;                // metre
+    private double[] launchAngle;        // degrees
+    private double[] firstLaunchTime;    // seconds
+    private int[] numStars;
+    private int[] countStars;
+    private double[] starLaunchTime;    // seconds
+    private double[] delayTime;            // seconds
+    // The number of particles each tube has in the store, counted afresh on each update.
+    private int[] particleCount;
+
+    /**
+     * The ShowEngine constructor.  The show starts with no tubes.
+     *
+     * @param windVelocity The wind velocity in m/sec.
+     * @throws EnvironmentException If the wind velocity is not between -20 and 20 m/sec.
+     */
+    public ShowEngine(double windVelocity) throws EnvironmentException {
+        env = new Environment(windVelocity);
+        Point2D.Double origin = new Point2D.Double(0.0, 0.0);
+        try {
+            // The same velocities and angle variations as the ParticleManager uses.
+            launcher = new LaunchTube(origin, origin, MAX_EXIT_VELOCITY, 0, VARIATION);
+            // Each tube counts its own stars.
+            launcher.setNumStars(Integer.MAX_VALUE);
+            // Given every color of the Palette in order, the launcher fires the color it is told is
+            // the number of stars it has launched, so no colors are passed to it for each star.
+            int[] allColors = new int[Palette.size()];
+            for (int c = 0; c < allColors.length; c++)
+                allColors[c] = c;
+            launcher.setColors(allColors);
+            starSparkEmit = new StarSparkEmitter(origin, origin, 3, 0, 180);
+            launchSparkEmit = new LaunchSparkEmitter(origin, origin, 20, 0, 3);
+            delaySparkEmit = new DelaySparkEmitter(origin, origin, 2.2, 0, 90);
+        } catch (EmitterException e) {
+            // The angles above are all legal.
+            throw new IllegalStateException(e);
+        }
+        setRandom(new SplittableRandom());
+        state = new byte[INITIAL_TUBES];
+        tubeX = new double[INITIAL_TUBES];
+        tipX = new double[INITIAL_TUBES];
+        tipY = new double[INITIAL_TUBES];
+        launchAngle = new double[INITIAL_TUBES];
+        firstLaunchTime = new double[INITIAL_TUBES];
+        numStars = new int[INITIAL_TUBES];
+        countStars = new int[INITIAL_TUBES];
+        starLaunchTime = new double[INITIAL_TUBES];
+        delayTime = new double[INITIAL_TUBES];
+        particleCount = new int[INITIAL_TUBES];
+    }
+
+    /**
+     * Adds a tube to the show.  The tube is one metre long, like the ParticleManager's candle.
+     *
+     * @param x           The position of the foot of the tube along the ground in metres.
+     * @param launchAngle The launch angle of the tube in degrees off the vertical.
+     * @param numStars    The number of stars to launch, one after the other.
+     * @param startTime   The absolute time in seconds at which the tube fires its first star.
+     * @return The index of the tube, which is also the group of its particles in the store.
+     * @throws EmitterException If the launch angle is not between -15 and 15 degrees, or there is not
+     *                          at least one star.
+     */
+    public int addTube(double x, double launchAngle, int numStars, double startTime) throws EmitterException {
+        LaunchTube.checkFiringAngle(launchAngle);
+        LaunchTube.checkNumStars(numStars);
+        int tube = newTube(x, WAITING);
+        point(tube, launchAngle);
+        firstLaunchTime[tube] = startTime;
+        this.numStars[tube] = numStars;
+        numRunning++;
+        return tube;
+    }
+
+    /**
+     * Plays a show script alongside any tubes already added.  Each cue fires one star when its time
+     * comes.  The script is read as the show goes on, and the caller should close it once the show
+     * is finished.  If the script cannot be read, or a cue is illegal, the rest of the script is
+     * skipped and the error is kept for getScriptError.
+     *
+     * @param script The script, positioned at its start.
+     * @throws IOException         If the script cannot be read.
+     * @throws ShowScriptException If the first cue, or a tube before it, is illegal.
+     */
+    public void play(ShowScriptReader script) throws IOException, ShowScriptException {
+        this.script = script;
+        scriptTubes = new int[0];
+        scriptError = null;
+        nextCue = script.next();
+    }
+
+    /**
+     * A mutator for the seed of the show's random numbers.  Two shows with the same seed, tubes and
+     * script, updated at the same times, are identical.  Call this before the first update.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        setRandom(new SplittableRandom(seed));
+    }
+
+    // Makes a generator the show generator and splits the emitters' generators from it.
+    private void setRandom(SplittableRandom showRandom) {
+        launcher.setRandom(showRandom.split());
+        starSparkEmit.setRandom(showRandom.split());
+        launchSparkEmit.setRandom(showRandom.split());
+        delaySparkEmit.setRandom(showRandom.split());
+        random = showRandom.split();
+    }
+
+    // Adds a tube with its foot at the given position, returning its index.
+    private int newTube(double x, byte tubeState) {
+        ensureTubeCapacity(numTubes + 1);
+        int tube = numTubes++;
+        state[tube] = tubeState;
+        tubeX[tube] = x;
+        countStars[tube] = 0;
+        starLaunchTime[tube] = Double.NEGATIVE_INFINITY;
+        delayTime[tube] = DELAY_CHARGE_TIME;
+        return tube;
+    }
+
+    // Points a tube at a launch angle, which moves its tip.
+    private void point(int tube, double launchAngle) {
+        double la = Math.PI * launchAngle / 180.0;    // radians
+        tipX[tube] = tubeX[tube] + Math.sin(la);
+        tipY[tube] = Math.cos(la);
+        this.launchAngle[tube] = launchAngle;
+    }
+
+    /**
+     * This method updates the simulation.  Each tube fires its first star at its start time.
+     *
+     * @param time The absolute time in seconds. The simulation was started at time = 0;
+     */
+    public void update(double time) {
+        long startTime = metrics != null || budget != null ? System.nanoTime() : 0;
+        TickEvent event = new TickEvent();
+        event.begin();
+        deltaTime = time - lastTime;
+        lastTime = time;
+        int expired = fireworks.removeExpired(time, preserveOrder);
+        int retired = viewport != null
+                ? fireworks.removeOutside(viewport, env.getWindVelocity(), time, preserveOrder) : 0;
+        countParticles();
+        // Move the survivors of every tube in one pass.
+        updater.update(fireworks, env.getWindVelocity(), time, deltaTime);
+        int size = fireworks.size();
+        for (int tube = 0; tube < numTubes; tube++) {
+            if (state[tube] == FIRING || state[tube] == SCRIPTED) {
+                fire(tube, time);
+            } else if (state[tube] == WAITING && time >= firstLaunchTime[tube]) {
+                state[tube] = FIRING;
+                launchStar(tube, time, MAX_EXIT_VELOCITY - 2 * random.nextDouble(), VARIATION,
+                        starColors[0]);
+            }
+        }
+        playCues(time);
+        // Only the stars that were alive before this update throw off sparks.
+        launchStarSparks(size, time);
+        if (metrics != null || budget != null) {
+            long nanos = System.nanoTime() - startTime;
+            if (metrics != null)
+                metrics.recordTick(nanos, fireworks, fireworks.size() - lastSize + expired + retired, expired, retired);
+            if (budget != null)
+                budget.recordTick(nanos);
+        }
+        if (event.shouldCommit()) {
+            event.simulationTime = time;
+            event.timeStep = (long) (deltaTime * 1e9);
+            event.particles = fireworks.size();
+            event.spawned = fireworks.size() - lastSize + expired + retired;
+            event.expired = expired;
+            event.retired = retired;
+            event.commit();
+        }
+        lastSize = fireworks.size();
+    }
+
+    // Counts the particles of each tube, in one pass over the store.
+    private void countParticles() {
+        Arrays.fill(particleCount, 0, numTubes, 0);
+        int size = fireworks.size();
+        for (int i = 0; i < size; i++)
+            particleCount[fireworks.getGroup(i)]++;
+    }
+
+    // Adds the delay charge sparks of a tube, and launches the next star of a tube firing stars of
+    // its own once every particle of the last one is gone, in the same way as ParticleManager.update.
+    private void fire(int tube, double time) {
+        int launched = 0;
+        if (time - starLaunchTime[tube] < delayTime[tube])
+            launched += launchDelaySparks(tube, time);
+        if (state[tube] == FIRING && launched == 0 && particleCount[tube] == 0) {
+            if (countStars[tube] < numStars[tube] - 1) {
+                launchDelaySparks(tube, time);
+                countStars[tube]++;
+                launchStar(tube, time, MAX_EXIT_VELOCITY - 2 * random.nextDouble(), VARIATION,
+                        starColors[countStars[tube] % starColors.length]);
+            } else {
+                state[tube] = FINISHED;
+                numRunning--;
+            }
+        }
+    }
+
+    // Fires every cue of the script that has come due.
+    private void playCues(double time) {
+        try {
+            while (nextCue != null && nextCue.getTime() <= time) {
+                int tube = getScriptTube(nextCue.getTube());
+                point(tube, nextCue.getLaunchAngle());
+                delayTime[tube] = nextCue.getDelayTime();
+                launchStar(tube, time, nextCue.getExitVelocity(), nextCue.getVariation(), nextCue.getColor());
+                nextCue = script.next();
+            }
+        } catch (IOException | ShowScriptException e) {
+            scriptError = e;
+            nextCue = null;
+        }
+    }
+
+    // Returns the show tube of a tube of the script, adding it to the show the first time.
+    private int getScriptTube(int scriptTube) {
+        if (scriptTube >= scriptTubes.length) {
+            int oldLength = scriptTubes.length;
+            scriptTubes = Arrays.copyOf(scriptTubes, Math.max(scriptTube + 1, oldLength * 2));
+            Arrays.fill(scriptTubes, oldLength, scriptTubes.length, -1);
+        }
+        if (scriptTubes[scriptTube] < 0)
+            scriptTubes[scriptTube] = newTube(script.getTubePosition(scriptTube), SCRIPTED);
+        return scriptTubes[scriptTube];
+    }
+
+    // Adds sparks of the same color as each star among the first particles of the store.
+    private void launchStarSparks(int size, double time) {
+        for (int i = 0; i < size; i++) {
+            if (fireworks.getType(i) != ParticleStore.STAR)
+                continue;
+            starSparkEmit.reinitialize(fireworks.getX(i), fireworks.getY(i),
+                    fireworks.getVelocityX(i), fireworks.getVelocityY(i));
+            try {
+                starSparkEmit.setColor(fireworks.getColor(i));
+            } catch (EmitterException e) {
+                // The color came from the store, so it is in the palette.
+                throw new IllegalStateException(e);
+            }
+            starSparkEmit.launch(time, fireworks, fireworks.getGroup(i));
+        }
+    }
+
+    // Launches a star of the given Palette color and one set of launch sparks from a tube.
+    private void launchStar(int tube, double time, double exitVelocity, double variation, int color) {
+        StarLaunchEvent event = new StarLaunchEvent();
+        event.begin();
+        int sizeBefore = fireworks.size();
+        aim(launcher, tube);
+        try {
+            launcher.setLaunchAngleVariation(variation);
+        } catch (EmitterException e) {
+            // The variation has already been checked.
+            throw new IllegalStateException(e);
+        }
+        launcher.setExitVelocity(exitVelocity);
+        launcher.setNumLaunched(color);
+        launcher.launch(time, fireworks, tube);
+        starLaunchTime[tube] = time;
+        // Add launch sparks to "push" the star out.
+        aim(launchSparkEmit, tube);
+        launchSparkEmit.launch(time, fireworks, tube);
+        if (event.shouldCommit()) {
+            event.simulationTime = time;
+            event.tube = tube;
+            event.color = Palette.getName(color);
+            event.exitVelocity = exitVelocity;
+            event.spawned = fireworks.size() - sizeBefore;
+            event.particles = fireworks.size();
+            event.commit();
+        }
+    }
+
+    // Launches delay charge sparks from the tip of a tube, returning the number launched.
+    private int launchDelaySparks(int tube, double time) {
+        aim(delaySparkEmit, tube);
+        return delaySparkEmit.launch(time, fireworks, tube);
+    }
+
+    // Moves an emitter to the tip of a tube and points it along the tube.
+    private void aim(Emitter emitter, int tube) {
+        emitter.reinitialize(tipX[tube], tipY[tube], 0, 0);
+        try {
+            emitter.setLaunchAngle(launchAngle[tube]);
+        } catch (EmitterException e) {
+            // addTube has already checked the angle.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Grows the tube arrays so they can hold at least the given number of tubes.
+    private void ensureTubeCapacity(int capacity) {
+        if (capacity <= state.length)
+            return;
+        int newCapacity = Math.max(capacity, state.length * 2);
+        state = Arrays.copyOf(state, newCapacity);
+        tubeX = Arrays.copyOf(tubeX, newCapacity);
+        tipX = Arrays.copyOf(tipX, newCapacity);
+        tipY = Arrays.copyOf(tipY, newCapacity);
+        launchAngle = Arrays.copyOf(launchAngle, newCapacity);
+        firstLaunchTime = Arrays.copyOf(firstLaunchTime, newCapacity);
+        numStars = Arrays.copyOf(numStars, newCapacity);
+        countStars = Arrays.copyOf(countStars, newCapacity);
+        starLaunchTime = Arrays.copyOf(starLaunchTime, newCapacity);
+        delayTime = Arrays.copyOf(delayTime, newCapacity);
+        particleCount = Arrays.copyOf(particleCount, newCapacity);
+    }
+
+    /**
+     * A mutator for the number of particles at which updates start to run in parallel.
+     *
+     * @param parallelThreshold The number of particles.  Use Integer.MAX_VALUE to always update on the
+     *                          calling thread.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        updater.setParallelThreshold(parallelThreshold);
+    }
+
+    /**
+     * A mutator for the pool used to run parallel updates.  The common pool is used by default.
+     *
+     * @param pool The ForkJoinPool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        updater.setPool(pool);
+    }
+
+    /**
+     * A mutator for whether dead particles are removed in a way that keeps the survivors in the order
+     * they were launched.  Frames are drawn color by color, in Palette order, so the launch order
+     * only decides which of two overlapping particles of the same color is on top; of two different
+     * colors, the one later in the palette is always on top.
+     *
+     * @param preserveOrder True to keep the launch order, which is the default.
+     */
+    public void setPreserveOrder(boolean preserveOrder) {
+        this.preserveOrder = preserveOrder;
+    }
+
+    /**
+     * A mutator for the solver used to move the particles.  The RungeKuttaSolver is used by default.
+     *
+     * @param solver The solver.
+     */
+    public void setSolver(Solver solver) {
+        fireworks.setSolver(solver);
+    }
+
+    /**
+     * A mutator for the solver used to move one type of particle.
+     *
+     * @param type   The type index: ParticleStore.STAR, SPARK or LAUNCH_SPARK.
+     * @param solver The solver.
+     */
+    public void setSolver(byte type, Solver solver) {
+        fireworks.setSolver(type, solver);
+    }
+
+    public void setWindVelocity(double windVel) throws EnvironmentException {
+        env.setWindVelocity(windVel);
+    }
+
+    /**
+     * An accessor for the work done by the solver so far.
+     *
+     * @return The number of function evaluations, counting each particle separately.
+     */
+    public long getEvaluations() {
+        return updater.getEvaluations();
+    }
+
+    /**
+     * Checks whether every tube has launched all its stars, every cue of the script has been played
+     * and all the particles are gone.
+     *
+     * @return True when the show is over.
+     */
+    public boolean checkIfFinished() {
+        return numRunning == 0 && nextCue == null && fireworks.isEmpty();
+    }
+
+    /**
+     * An accessor for the error that stopped the script before its last cue.  The show carries on
+     * with the stars already launched, so it still finishes, but not as the script meant.
+     *
+     * @return The IOException or ShowScriptException, or null if every cue so far was played.
+     */
+    public Exception getScriptError() {
+        return scriptError;
+    }
+
+    /**
+     * An accessor for the number of tubes in the show.
+     *
+     * @return The number of tubes.
+     */
+    public int getTubeCount() {
+        return numTubes;
+    }
+
+    /**
+     * An accessor for the number of live particles, over all the tubes.
+     *
+     * @return The number of particles.
+     */
+    public int getParticleCount() {
+        return fireworks.size();
+    }
+
+    /**
+     * Advances the simulation to the supplied time and publishes a frame of the particles to the
+     * frame buffer.
+     *
+     * @param time The absolute time in seconds. The simulation started at time = 0.
+     */
+    public void tick(double time) {
+        update(time);
+        publish();
+    }
+
+    /**
+     * Publishes a frame of the particles, as they were at the last update, to the frame buffer.
+     */
+    public void publish() {
+        if (budget != null)
+            budget.recordFrame();
+        Frame frame = frames.publish(fireworks, lastTime, numTubes, tubeX, launchAngle);
+        if (recorder != null) {
+            try {
+                recorder.record(frame);
+            } catch (IOException e) {
+                // Carry on with the show, but stop recording it.
+                System.out.println(e.getMessage());
+                recorder = null;
+            }
+        }
+    }
+
+    /**
+     * A mutator for the sink that each published frame is also handed to, such as a FrameRecorder or
+     * a FrameExporter.  The caller closes the sink once the show is over.
+     *
+     * @param recorder The sink, or null to stop recording.
+     */
+    public void setRecorder(FrameSink recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * A mutator for the part of the world that is shown.  Particles that can never come back into it
+     * are retired on each update.
+     *
+     * @param viewport The viewport, such as Viewport.forImage of the display size, or null to keep
+     *                 every particle until its lifetime is over.
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * An accessor for the number of particles retired early because they could not be seen again.
+     *
+     * @return The number of particles.
+     */
+    public long getRetiredCount() {
+        return fireworks.getRetiredCount();
+    }
+
+    /**
+     * An accessor for the lifetime the retired particles had left, added up, which is the simulated
+     * time for which particles were not moved.
+     *
+     * @return The total lifetime in seconds.
+     */
+    public double getRetiredLifetime() {
+        return fireworks.getRetiredLifetime();
+    }
+
+    /**
+     * A mutator for the budget that scales down the sparks when the show is close to missing its
+     * frame deadline.  The cost of each update is recorded to it and counted against the next frame
+     * published, and the caller records the cost of painting each frame.
+     *
+     * @param budget The budget, or null to always launch the usual sparks.
+     */
+    public void setBudget(ParticleBudget budget) {
+        this.budget = budget;
+        starSparkEmit.setBudget(budget);
+        delaySparkEmit.setBudget(budget);
+    }
+
+    /**
+     * A mutator for the metrics each update is recorded to.  Recording reads the clock and adds to
+     * lock-free counters, and allocates nothing.
+     *
+     * @param metrics The metrics, or null to stop measuring.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+        // The particles already alive were spawned before the metrics were watching.
+        lastSize = fireworks.size();
+    }
+
+    /**
+     * An accessor for the buffer the simulation publishes its frames to.
+     *
+     * @return The frame buffer.
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frames;
+    }
+}
@@ -0,0 +1,17 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * Thrown by the ShowScriptReader if a show script cannot be understood or describes an illegal show.
+ */
+public class ShowScriptException extends Exception {
+
+    /**
+     * Accepts a specific message about the problem.
+     *
+     * @param message The problem, including the line of the script it was found on.
+     */
+    public ShowScriptException(String message) {
+        super(message);
+    }
+
+}
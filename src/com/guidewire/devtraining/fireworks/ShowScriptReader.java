@@ -0,0 +1,198 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a show script one cue at a time, so a show of any length can be streamed into the ShowEngine
+ * as it plays rather than loaded up front.  Only the position of each tube is kept once it has been
+ * read.
+ * <p>
+ * A script is plain text with one record per line.  A tube record gives the index of a tube and the
+ * position of its foot along the ground in metres.  Tubes are numbered from 0 in the order they are
+ * declared, and must be declared before their first cue.  A cue record gives the time in seconds, the
+ * tube, the launch angle in degrees off the vertical, the exit velocity in m/sec and the color of a
+ * star, optionally followed by the launch angle variation in degrees and the time in seconds for which
+ * delay charge sparks follow the star.  Cues must be in time order.  A # starts a comment.
+ * <pre>
+ * # Two tubes 20 m apart, crossing their stars.
+ * tube 0 -10
+ * tube 1 10
+ * cue 0.0 0 10 22 red
+ * cue 0.5 1 -10 21.5 blue variation=1 delay=2.0
+ * </pre>
+ * The values are checked with the same rules as the LaunchTube constructor.
+ *
+ * @version 1.0
+ */
+public class ShowScriptReader implements Closeable {
+
+    /**
+     * The launch angle variation of a cue that does not give one, in degrees.
+     */
+    public final static double DEFAULT_VARIATION = 2;
+    /**
+     * The delay charge time of a cue that does not give one, in seconds.
+     */
+    public final static double DEFAULT_DELAY_TIME = 3.5;
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private double[] tubeX = new double[16];    // metre
+    private int numTubes;
+    private double lastTime = Double.NEGATIVE_INFINITY;    // seconds
+
+    /**
+     * The ShowScriptReader constructor.
+     *
+     * @param reader The source of the script.  It is closed when this reader is closed.
+     */
+    public ShowScriptReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Reads up to and including the next cue of the script.
+     *
+     * @return The cue, or null at the end of the script.
+     * @throws IOException         If the script cannot be read.
+     * @throws ShowScriptException If a record is not understood or breaks the rules of the show.
+     */
+    public ShowCue next() throws IOException, ShowScriptException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty())
+                continue;
+            if (fields[0].equals("tube"))
+                readTube(fields);
+            else if (fields[0].equals("cue"))
+                return readCue(fields);
+            else
+                throw error("Unknown record: " + fields[0]);
+        }
+        return null;
+    }
+
+    /**
+     * An accessor for the number of tubes declared so far.
+     *
+     * @return The number of tubes.
+     */
+    public int getTubeCount() {
+        return numTubes;
+    }
+
+    /**
+     * An accessor for the position of a tube.
+     *
+     * @param tube The index of the tube in the script.
+     * @return The position of the foot of the tube along the ground in metres.
+     */
+    public double getTubePosition(int tube) {
+        if (tube < 0 || tube >= numTubes)
+            throw new IllegalArgumentException("Tube not declared: " + tube);
+        return tubeX[tube];
+    }
+
+    /**
+     * An accessor for the number of the last line read.
+     *
+     * @return The line number, counting from 1.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // Declares a tube: tube <index> <x>
+    private void readTube(String[] fields) throws ShowScriptException {
+        if (fields.length != 3)
+            throw error("A tube needs an index and a position");
+        int tube = parseInt(fields[1]);
+        if (tube != numTubes)
+            throw error("Tube " + tube + " declared out of order, expected " + numTubes);
+        if (numTubes == tubeX.length)
+            tubeX = Arrays.copyOf(tubeX, numTubes * 2);
+        tubeX[numTubes++] = parseDouble(fields[2]);
+    }
+
+    // Reads a cue: cue <time> <tube> <angle> <velocity> <color> [variation=<degrees>] [delay=<seconds>]
+    private ShowCue readCue(String[] fields) throws ShowScriptException {
+        if (fields.length < 6)
+            throw error("A cue needs a time, tube, angle, velocity and color");
+        double time = parseDouble(fields[1]);
+        if (time < lastTime)
+            throw error("Cue out of order: " + time + " is before " + lastTime);
+        int tube = parseInt(fields[2]);
+        if (tube < 0 || tube >= numTubes)
+            throw error("Tube not declared: " + tube);
+        double launchAngle = parseDouble(fields[3]);
+        double exitVelocity = parseDouble(fields[4]);
+        if (!(exitVelocity > 0))
+            throw error("Exit velocity out of range: " + exitVelocity);
+        int color = Palette.indexOf(fields[5]);
+        if (color == Palette.BLACK && !fields[5].equalsIgnoreCase(Palette.getName(Palette.BLACK)))
+            throw error("Unknown color: " + fields[5]);
+        double variation = DEFAULT_VARIATION;
+        double delayTime = DEFAULT_DELAY_TIME;
+        for (int i = 6; i < fields.length; i++) {
+            int equals = fields[i].indexOf('=');
+            String name = equals < 0 ? fields[i] : fields[i].substring(0, equals);
+            String value = fields[i].substring(equals + 1);
+            if (equals > 0 && name.equals("variation"))
+                variation = parseDouble(value);
+            else if (equals > 0 && name.equals("delay"))
+                delayTime = parseDouble(value);
+            else
+                throw error("Unknown cue setting: " + fields[i]);
+        }
+        if (!(delayTime >= 0))
+            throw error("Delay time out of range: " + delayTime);
+        try {
+            LaunchTube.checkFiringAngle(launchAngle);
+            LaunchTube.checkVariation(variation);
+        } catch (EmitterException e) {
+            throw error(e.getMessage());
+        }
+        lastTime = time;
+        return new ShowCue(time, tube, launchAngle, exitVelocity, color, variation, delayTime);
+    }
+
+    // Parses a whole number, reporting the line if it is not one.
+    private int parseInt(String field) throws ShowScriptException {
+        try {
+            return Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw error("Not a whole number: " + field);
+        }
+    }
+
+    // Parses a finite number, reporting the line if it is not one.
+    private double parseDouble(String field) throws ShowScriptException {
+        double value;
+        try {
+            value = Double.parseDouble(field);
+        } catch (NumberFormatException e) {
+            throw error("Not a number: " + field);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            throw error("Not a number: " + field);
+        return value;
+    }
+
+    // Returns an exception for a problem on the current line.
+    private ShowScriptException error(String message) {
+        return new ShowScriptException("Line " + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,213 @@
+package com.guidewire.devtraining.fireworks;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a ParticleManager on its own thread with a fixed time step, apart from the timer that paints
+ * the display.  The wall time that passes is added to an accumulator, and the simulation is advanced
+ * by whole steps until less than one step is left over, so the physics always see the same step
+ * whatever the frame rate and however late the thread wakes up.  A frame is published after each
+ * batch of steps.
+ * <p>
+ * If the simulation falls behind, at most maxStepsPerFrame steps are run to catch up before a frame
+ * is published, and any backlog beyond that is dropped rather than carried into the next pass.  More
+ * than MAX_FRAME_TIME of wall time in one pass, for example after the machine was suspended, is
+ * dropped as well.  Slow steps therefore cannot cause ever more steps to catch up on (the "spiral
+ * of death"): the show runs slower than real time instead, and the cost of a pass stays bounded.
+ * <p>
+ * While the loop is running only its own thread may use the manager.  Other threads must pass any
+ * change to execute, which runs it on the simulation thread between steps.
+ *
+ * @version 1.0
+ */
+public class SimulationLoop implements Runnable {
+
+    /**
+     * The default simulated time of one step in seconds.
+     */
+    public final static double DEFAULT_TIME_STEP = 1.0 / 60;
+    /**
+     * The default largest number of steps run before a frame is published.
+     */
+    public final static int DEFAULT_MAX_STEPS_PER_FRAME = 5;
+
+    private final static double MAX_FRAME_TIME = 0.25;    // seconds
+
+    private final ParticleManager manager;
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private double timeStep = DEFAULT_TIME_STEP;            // seconds
+    private int maxStepsPerFrame = DEFAULT_MAX_STEPS_PER_FRAME;
+    private Runnable finishedListener;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile double time;        // seconds
+    private double accumulator;            // seconds
+    private volatile long steps;
+    private volatile double droppedTime;    // seconds
+
+    /**
+     * The SimulationLoop constructor.  The manager should already have been started.
+     *
+     * @param manager   The manager to run.
+     * @param startTime The absolute time of the first step in seconds.
+     */
+    public SimulationLoop(ParticleManager manager, double startTime) {
+        this.manager = manager;
+        time = startTime;
+    }
+
+    /**
+     * A mutator for the simulated time of one step.  It may only be changed while the loop is stopped.
+     *
+     * @param timeStep The time step in seconds.
+     */
+    public void setTimeStep(double timeStep) {
+        if (timeStep <= 0)
+            throw new IllegalArgumentException("Time step must be positive: " + timeStep);
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * A mutator for the largest number of steps run to catch up before a frame is published.  It
+     * may only be changed while the loop is stopped.
+     *
+     * @param maxStepsPerFrame The number of steps.
+     */
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        if (maxStepsPerFrame < 1)
+            throw new IllegalArgumentException("At least one step per frame is needed: " + maxStepsPerFrame);
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * A mutator for the listener told when the show has finished.  The listener is called on the
+     * simulation thread, after which the loop stops.
+     *
+     * @param finishedListener The listener, or null for none.
+     */
+    public void setFinishedListener(Runnable finishedListener) {
+        this.finishedListener = finishedListener;
+    }
+
+    /**
+     * Runs a change to the manager on the simulation thread, before the next step.  Changes made
+     * while the loop is stopped are run when it starts again.
+     *
+     * @param change The change.
+     */
+    public void execute(Runnable change) {
+        pending.add(change);
+    }
+
+    /**
+     * Starts the loop on a new thread, if it is not running already.  Wall time that passed while
+     * the loop was stopped is not caught up on.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        accumulator = 0;
+        thread = new Thread(this, "Fireworks simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the loop, waiting for the step in progress to finish.  The loop can be started again.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread == null || thread == Thread.currentThread())
+            return;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Runs the loop until it is stopped or the show finishes.  Call start rather than calling this
+     * directly.
+     */
+    public void run() {
+        long previous = System.nanoTime();
+        while (running) {
+            runPending();
+            if (manager.checkIfFinished()) {
+                running = false;
+                if (finishedListener != null)
+                    finishedListener.run();
+                return;
+            }
+            long now = System.nanoTime();
+            double elapsed = (now - previous) / 1e9;
+            previous = now;
+            if (elapsed > MAX_FRAME_TIME) {
+                droppedTime += elapsed - MAX_FRAME_TIME;
+                elapsed = MAX_FRAME_TIME;
+            }
+            accumulator += elapsed;
+            int numSteps = 0;
+            while (accumulator >= timeStep && numSteps < maxStepsPerFrame) {
+                manager.update(time);
+                time += timeStep;
+                accumulator -= timeStep;
+                numSteps++;
+            }
+            if (accumulator >= timeStep) {
+                // Too far behind to catch up, so keep only the part of a step that is left over.
+                double backlog = accumulator - accumulator % timeStep;
+                droppedTime += backlog;
+                accumulator -= backlog;
+            }
+            if (numSteps > 0) {
+                manager.publish();
+                steps += numSteps;
+            }
+            LockSupport.parkNanos((long) ((timeStep - accumulator) * 1e9));
+        }
+    }
+
+    /**
+     * An accessor for the simulated time of the next step.
+     *
+     * @return The absolute time in seconds.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * An accessor for the number of steps run so far.
+     *
+     * @return The number of steps.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * An accessor for the wall time that was not simulated because the loop fell too far behind.
+     *
+     * @return The dropped time in seconds.
+     */
+    public double getDroppedTime() {
+        return droppedTime;
+    }
+
+    // Runs the changes passed to execute.
+    private void runPending() {
+        Runnable change;
+        while ((change = pending.poll()) != null)
+            change.run();
+    }
+}
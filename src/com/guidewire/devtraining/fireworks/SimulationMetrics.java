@@ -0,0 +1,228 @@
+package com.guidewire.devtraining.fireworks;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a running simulation and its display, and exposes the measurements as an MBean: how long
+ * each tick and each painted frame takes, how many particles of each type are alive, how many are
+ * spawned and expire each second, and how many frames the painter dropped.  The work saved by the
+ * viewport is counted too: the particles retired early because they could not be seen again, and
+ * the particles the renderer skipped because they were off the image.  Given the show's ParticleBudget,
+ * the emission level it has set and the frame cost it is working from are shown as well.
+ * <p>
+ * The simulation thread records each tick and the painter records each frame.  Recording only reads
+ * the clock, adds to lock-free counters and histograms, and allocates nothing, so measuring a show
+ * does not slow it down enough to drop frames.  The readings are taken by the JMX threads without
+ * stopping either thread.
+ *
+ * @version 1.2
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    /**
+     * The name the metrics are registered under by register.
+     */
+    public final static String OBJECT_NAME = "com.guidewire.devtraining.fireworks:type=SimulationMetrics";
+
+    // The spawn and expiry rates are measured over windows of at least this length.
+    private final static long RATE_WINDOW = 1_000_000_000L;    // nanoseconds
+
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final LatencyHistogram renders = new LatencyHistogram();
+    private final AtomicLong spawnedTotal = new AtomicLong();
+    private final AtomicLong expiredTotal = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong retiredTotal = new AtomicLong();
+    private final AtomicLong culledTotal = new AtomicLong();
+    private volatile ParticleBudget budget;
+    private volatile int liveStars;
+    private volatile int liveSparks;
+    private volatile int liveLaunchSparks;
+    // The rate window, which only the simulation thread changes.
+    private volatile long windowStart = System.nanoTime();
+    private long windowSpawned;
+    private long windowExpired;
+    private volatile double spawnedPerSecond;
+    private volatile double expiredPerSecond;
+    // The time the painter started the last frame, which only the painter changes.
+    private long lastPaint;        // nanoseconds
+
+    /**
+     * Registers the metrics with the platform MBean server under OBJECT_NAME, replacing any metrics
+     * registered there before.
+     *
+     * @throws JMException If the metrics cannot be registered.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(this, name);
+    }
+
+    /**
+     * A mutator for the budget whose emission level is shown.
+     *
+     * @param budget The budget, or null for none, in which case the level shows as 1.
+     */
+    public void setBudget(ParticleBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Records a tick of the simulation.  Only the simulation thread may call this.
+     *
+     * @param nanos   The time the tick took in nanoseconds.
+     * @param store   The particles after the tick.
+     * @param spawned The number of particles added since the last tick.
+     * @param expired The number of particles that expired in the tick.
+     * @param retired The number of particles retired in the tick before their lifetime was over.
+     */
+    public void recordTick(long nanos, ParticleStore store, int spawned, int expired, int retired) {
+        ticks.record(nanos);
+        liveStars = store.count(ParticleStore.STAR);
+        liveSparks = store.count(ParticleStore.SPARK);
+        liveLaunchSparks = store.count(ParticleStore.LAUNCH_SPARK);
+        spawnedTotal.addAndGet(spawned);
+        expiredTotal.addAndGet(expired);
+        retiredTotal.addAndGet(retired);
+        windowSpawned += spawned;
+        windowExpired += expired;
+        long now = System.nanoTime();
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW) {
+            spawnedPerSecond = windowSpawned * 1e9 / elapsed;
+            expiredPerSecond = windowExpired * 1e9 / elapsed;
+            windowSpawned = 0;
+            windowExpired = 0;
+            windowStart = now;
+        }
+    }
+
+    /**
+     * Records a painted frame.  A frame that starts more than half an interval later than due counts
+     * the frames skipped over as dropped.  Only the painter may call this.
+     *
+     * @param start    The System.nanoTime at which painting the frame started.
+     * @param end      The System.nanoTime at which painting the frame ended.
+     * @param interval The time between frames in nanoseconds.
+     * @param culled   The number of particles in the frame that were off the image and not drawn.
+     */
+    public void recordPaint(long start, long end, long interval, int culled) {
+        renders.record(end - start);
+        culledTotal.addAndGet(culled);
+        if (lastPaint != 0 && interval > 0) {
+            long missed = (start - lastPaint + interval / 2) / interval - 1;
+            if (missed > 0)
+                droppedFrames.addAndGet(missed);
+        }
+        lastPaint = start;
+    }
+
+    public long getTickCount() {
+        return ticks.getCount();
+    }
+
+    public double getTickMedianMillis() {
+        return ticks.getPercentile(50) / 1e6;
+    }
+
+    public double getTick90thPercentileMillis() {
+        return ticks.getPercentile(90) / 1e6;
+    }
+
+    public double getTick99thPercentileMillis() {
+        return ticks.getPercentile(99) / 1e6;
+    }
+
+    public double getTickMaxMillis() {
+        return ticks.getMax() / 1e6;
+    }
+
+    public long getRenderCount() {
+        return renders.getCount();
+    }
+
+    public double getRenderMedianMillis() {
+        return renders.getPercentile(50) / 1e6;
+    }
+
+    public double getRender99thPercentileMillis() {
+        return renders.getPercentile(99) / 1e6;
+    }
+
+    public double getRenderMaxMillis() {
+        return renders.getMax() / 1e6;
+    }
+
+    public int getLiveStars() {
+        return liveStars;
+    }
+
+    public int getLiveSparks() {
+        return liveSparks;
+    }
+
+    public int getLiveLaunchSparks() {
+        return liveLaunchSparks;
+    }
+
+    public double getSpawnedPerSecond() {
+        return isStale() ? 0 : spawnedPerSecond;
+    }
+
+    public double getExpiredPerSecond() {
+        return isStale() ? 0 : expiredPerSecond;
+    }
+
+    public long getSpawnedTotal() {
+        return spawnedTotal.get();
+    }
+
+    public long getExpiredTotal() {
+        return expiredTotal.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getRetiredTotal() {
+        return retiredTotal.get();
+    }
+
+    public long getCulledTotal() {
+        return culledTotal.get();
+    }
+
+    public double getEmissionLevel() {
+        ParticleBudget current = budget;
+        return current != null ? current.getLevel() : 1;
+    }
+
+    public double getBudgetFrameCostMillis() {
+        ParticleBudget current = budget;
+        return current != null ? current.getFrameCostMillis() : 0;
+    }
+
+    public void reset() {
+        ticks.reset();
+        renders.reset();
+        spawnedTotal.set(0);
+        expiredTotal.set(0);
+        droppedFrames.set(0);
+        retiredTotal.set(0);
+        culledTotal.set(0);
+    }
+
+    // Tells whether the simulation has stopped ticking, for example while paused, so the last rates
+    // no longer hold.
+    private boolean isStale() {
+        return System.nanoTime() - windowStart > 2 * RATE_WINDOW;
+    }
+}
@@ -0,0 +1,57 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The management interface of SimulationMetrics, as seen through JMX, for example in JConsole.
+ * Durations are in milliseconds.
+ *
+ * @version 1.2
+ */
+public interface SimulationMetricsMBean {
+
+    long getTickCount();
+
+    double getTickMedianMillis();
+
+    double getTick90thPercentileMillis();
+
+    double getTick99thPercentileMillis();
+
+    double getTickMaxMillis();
+
+    long getRenderCount();
+
+    double getRenderMedianMillis();
+
+    double getRender99thPercentileMillis();
+
+    double getRenderMaxMillis();
+
+    int getLiveStars();
+
+    int getLiveSparks();
+
+    int getLiveLaunchSparks();
+
+    double getSpawnedPerSecond();
+
+    double getExpiredPerSecond();
+
+    long getSpawnedTotal();
+
+    long getExpiredTotal();
+
+    long getDroppedFrames();
+
+    long getRetiredTotal();
+
+    long getCulledTotal();
+
+    double getEmissionLevel();
+
+    double getBudgetFrameCostMillis();
+
+    /**
+     * Clears the durations, totals and dropped frames, to measure afresh from now.
+     */
+    void reset();
+}
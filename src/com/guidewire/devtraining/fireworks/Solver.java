@@ -0,0 +1,35 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The solvers a ParticleStore can use to advance its particles.  Each type of particle may have its
+ * own solver, so that short-lived sparks can be moved more cheaply than stars.
+ *
+ * @version 1.1
+ */
+public enum Solver {
+
+    /**
+     * Classic fourth order Runge-Kutta with one step per time interval, using RungeKuttaSolver.  This
+     * is the default, and is what the Particle objects use.
+     */
+    RUNGE_KUTTA,
+
+    /**
+     * Adaptive steps with error control, using DormandPrinceSolver.  Better suited to headless and
+     * offline runs with long time intervals.
+     */
+    DORMAND_PRINCE,
+
+    /**
+     * Semi-implicit Euler, using EulerSolver: one evaluation per time interval, first order.
+     */
+    SEMI_IMPLICIT_EULER,
+
+    /**
+     * Drag and gravity solved exactly over each time interval, with the drag coefficient held at its
+     * value at the start of the interval.  The velocity then relaxes exponentially towards the
+     * terminal velocity, which stays stable for any interval.  Costs about as much as one evaluation,
+     * and is meant for particles whose mass does not change: sparks and launch sparks.
+     */
+    EXACT_DRAG
+}
@@ -5,12 +5,12 @@ import java.awt.geom.Point2D;
 /**
  * A spark.
  *
- * @version 1.0
+ * @version 1.1
  */
 public class Spark extends Particle {
 
-    private final double RADIUS = 0.0015;    // metre
-    private final double MASS = 2E-6;        // kg
+    final static double RADIUS = 0.0015;    // metre
+    final static double MASS = 2E-6;        // kg
 
     /**
      * The Spark constructor.
@@ -20,10 +20,10 @@ public class Spark extends Particle {
      * @param initialPos   The initial position of the spark in the X direction.
      * @param initialV     The initial X velocity component of the spark.
      * @param lifetime     The lifetime of the spark in seconds.
-     * @param starColor    The color of the spark.
+     * @param starColor    The Palette index of the color of the spark.
      */
     public Spark(double creationTime, Point2D.Double initialPos, Point2D.Double initialV
-            , double lifetime, String starColor) {
+            , double lifetime, int starColor) {
         super(creationTime, initialPos, initialV, starColor);
         setLifetime(lifetime);
         setStartingMass(MASS);
@@ -5,13 +5,16 @@ import java.awt.geom.Point2D;
 /**
  * This class describes the star from a Roman Candle.
  *
- * @version 1.0
+ * @version 1.2
  */
 public class Star extends Particle {
 
-    private final double BURN_RATE = 0.003;    // kg/second
-    private final double DENSITY_STAR = 1900;    // kg/m*m*m
-    private final double STARTING_MASS = 0.008;    // kg
+    final static double BURN_RATE = 0.003;    // kg/second
+    final static double DENSITY_STAR = 1900;    // kg/m*m*m
+    final static double STARTING_MASS = 0.008;    // kg
+    final static double LIFETIME = STARTING_MASS / BURN_RATE - 0.5;    // seconds
+    // The radius and drag area against age, shared by every star.
+    final static BurnTable BURN_TABLE = BurnTable.getInstance(STARTING_MASS, BURN_RATE, DENSITY_STAR);
 
     /**
      * The Star constructor.
@@ -20,12 +23,12 @@ public class Star extends Particle {
      * @param creationTime The absolute time of creation of the star.
      * @param initialPos   The initial position of the star.
      * @param initialV     The initial velocity component of the star.
-     * @param starColor    The color of the star.
+     * @param starColor    The Palette index of the color of the star.
      */
     public Star(double creationTime, Point2D.Double initialPos
-            , Point2D.Double initialV, String starColor) {
+            , Point2D.Double initialV, int starColor) {
         super(creationTime, initialPos, initialV, starColor);
-        setLifetime(STARTING_MASS / BURN_RATE - 0.5);
+        setLifetime(LIFETIME);
         setStartingMass(STARTING_MASS);
     }
 
@@ -40,18 +43,27 @@ public class Star extends Particle {
      * @return The mass of the star in kg.
      */
     public double getMass(double time) {
-        return STARTING_MASS - time * BURN_RATE;
+        return BURN_TABLE.getMass(time);
     }
 
     /**
-     * Returns the radius of the star for the given time in seconds.
+     * Returns the radius of the star for the given time in seconds, from the burn table.
      *
      * @param time The time in seconds.
      * @return The radius of the star in metres.
      */
     public double getRadius(double time) {
-        double volume = getMass(time) / DENSITY_STAR;
-        return Math.pow(3 * volume / (4 * Math.PI), 1.0 / 3.0);
+        return BURN_TABLE.getRadius(time);
+    }
+
+    /**
+     * Returns the drag area of the star for the given time in seconds, from the burn table.
+     *
+     * @param time The time in seconds.
+     * @return The drag area in m*m.
+     */
+    public double getDragArea(double time) {
+        return BURN_TABLE.getDragArea(time);
     }
 
     /**
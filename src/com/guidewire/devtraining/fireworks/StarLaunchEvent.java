@@ -0,0 +1,42 @@
+package com.guidewire.devtraining.fireworks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the launch of a star, together with the launch sparks that push it out
+ * of the tube.  When no recording is running, the event costs almost nothing.
+ *
+ * @version 1.0
+ */
+@Name("com.guidewire.devtraining.fireworks.StarLaunch")
+@Label("Star Launch")
+@Category("Fireworks")
+@Description("A star and its launch sparks fired from a tube")
+@StackTrace(false)
+class StarLaunchEvent extends jdk.jfr.Event {
+
+    @Label("Simulation Time")
+    @Description("The simulated time of the launch in seconds")
+    double simulationTime;
+
+    @Label("Tube")
+    int tube;
+
+    @Label("Color")
+    String color;
+
+    @Label("Exit Velocity")
+    @Description("The exit velocity of the star in m/sec")
+    double exitVelocity;
+
+    @Label("Spawned")
+    int spawned;
+
+    @Label("Particles")
+    @Description("The number of particles after the launch")
+    int particles;
+}
@@ -4,15 +4,17 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 
 /**
- * Emitter for Star sparks.
+ * Emitter for Star sparks.  Bursts are scaled by the emitter's ParticleBudget.
  *
- * @version 1.1
+ * @version 1.7
  */
 public class StarSparkEmitter extends Emitter {
 
     private final double LIFETIME = 0.1;        // seconds
     private final int NUM_LAUNCHED = 20;        // how many to launch
-    private String color;
+    // Scatter the creation times a little to spread the sparks out more.
+    private final double TIME_SPREAD = 1.5;        // seconds
+    private int color = Palette.WHITE;
 
     /**
      * The StarSparkEmitter constructor.
@@ -32,9 +34,12 @@ public class StarSparkEmitter extends Emitter {
     /**
      * A mutator for the color of the StarSpark to be launched.
      *
-     * @param color The desired StarSpark color.
+     * @param color The Palette index of the desired StarSpark color.
+     * @throws EmitterException If the index is not in the Palette.
      */
-    public void setColor(String color) {
+    public void setColor(int color) throws EmitterException {
+        if (!Palette.contains(color))
+            throw new EmitterException("Color out of range: " + color);
         this.color = color;
     }
 
@@ -45,21 +50,17 @@ public class StarSparkEmitter extends Emitter {
      * @return An ArrayList of StarSpark objects.
      */
     public ArrayList<Spark> launch(double time) {
-        double angle;
-        Point2D.Double vInitial;
         Point2D.Double position = getPosition();
-        Point2D.Double velocity = getVelocity();
-        ArrayList<Spark> sparks = new ArrayList<>(NUM_LAUNCHED);
-        double randomTime;
-        double exitVelocity = getExitVelocity();
-        for (int i = 0; i < NUM_LAUNCHED; i++) {
-            angle = getRandomLaunchAngle();
-            vInitial = new Point2D.Double(velocity.x + exitVelocity * Math.sin(angle)
-                    , velocity.y + exitVelocity * Math.cos(angle));
-            // Add some slight variation to time to scatter the sparks a bit more
-            randomTime = time + (1.5 * (Math.random() - 0.5));
-            sparks.add(new Spark(randomTime, position, vInitial, LIFETIME, color));
-        }
+        int count = drawBurst(budgetCount(NUM_LAUNCHED), time, TIME_SPREAD);
+        double lifetime = budgetLifetime(LIFETIME);
+        ArrayList<Spark> sparks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            sparks.add(new Spark(getBurstTime(i), position, getBurstVelocity(i), lifetime, color));
         return sparks;
     }
+
+    protected int emit(double time, ParticleStore store, int group) {
+        return emitBurst(store, group, ParticleStore.SPARK, budgetCount(NUM_LAUNCHED), time, TIME_SPREAD,
+                budgetLifetime(LIFETIME), color);
+    }
 }
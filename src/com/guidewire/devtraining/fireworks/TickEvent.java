@@ -0,0 +1,46 @@
+package com.guidewire.devtraining.fireworks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for one update of a ParticleManager or ShowEngine, giving how long the tick
+ * took and how the population changed in it.  When no recording is running, creating and committing
+ * the event is compiled away, so the simulation pays almost nothing for it.
+ *
+ * @version 1.1
+ */
+@Name("com.guidewire.devtraining.fireworks.Tick")
+@Label("Simulation Tick")
+@Category("Fireworks")
+@Description("One update of the simulation")
+@StackTrace(false)
+class TickEvent extends jdk.jfr.Event {
+
+    @Label("Simulation Time")
+    @Description("The simulated time of the tick in seconds")
+    double simulationTime;
+
+    @Label("Time Step")
+    @Timespan(Timespan.NANOSECONDS)
+    long timeStep;
+
+    @Label("Particles")
+    @Description("The number of particles after the tick")
+    int particles;
+
+    @Label("Spawned")
+    @Description("The number of particles added since the last tick")
+    int spawned;
+
+    @Label("Expired")
+    int expired;
+
+    @Label("Retired")
+    @Description("The number of particles removed before their lifetime was over, as they could not be seen again")
+    int retired;
+}
@@ -0,0 +1,125 @@
+package com.guidewire.devtraining.fireworks;
+
+/**
+ * The part of the world that is shown, together with the ground, so the simulation can retire the
+ * particles that will never be seen again rather than move them until their lifetime is over.
+ * <p>
+ * The renderer always shows the 22 m above the ground, centred on x = 0, so the width of the view
+ * follows from the aspect ratio of the image.  A particle that has fallen below the ground cannot
+ * come back.  Nor can one that has left the view to the side, as long as it and the wind are both
+ * moving away from the view, since drag only ever brings a particle's horizontal velocity closer to
+ * the wind's.  A particle above the view may still fall back into it, so it is never retired.
+ * <p>
+ * Each edge is moved out by MARGIN, so a particle is only retired once no part of it can be drawn.
+ * A renderer drawing a single launch tube also moves every particle sideways to the tip of the tube,
+ * by up to TUBE_LENGTH, so the side edges are moved out by that much again unless the launch angle
+ * is known.
+ *
+ * @version 1.1
+ */
+public class Viewport {
+
+    /**
+     * The height of the world shown above the ground in metres.
+     */
+    public final static double VIEW_HEIGHT = 22;    // metre
+    /**
+     * How far past an edge a particle must be before it counts as out of view, in metres, which is
+     * more than the radius of the largest particle drawn at any usual image size.
+     */
+    public final static double MARGIN = 0.25;    // metre
+    /**
+     * The length of the launch tube as the renderer draws it, in metres, which is the furthest its
+     * tip can be to the side of its foot.
+     */
+    public final static double TUBE_LENGTH = 1;    // metre
+    /**
+     * A viewport with only the ground, for when the width of the view is not known.
+     */
+    public final static Viewport GROUND = new Viewport(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, -MARGIN);
+
+    private final double left;        // metre
+    private final double right;        // metre
+    private final double ground;    // metre
+
+    /**
+     * The Viewport constructor.
+     *
+     * @param left   The X position beyond which particles to the left are out of view, in metres.
+     * @param right  The X position beyond which particles to the right are out of view, in metres.
+     * @param ground The Y position below which particles are under the ground, in metres.
+     */
+    public Viewport(double left, double right, double ground) {
+        if (!(left < right))
+            throw new IllegalArgumentException("Viewport edges out of order: " + left + " to " + right);
+        this.left = left;
+        this.right = right;
+        this.ground = ground;
+    }
+
+    /**
+     * Returns the viewport of an image drawn by a FrameRenderer with tubes at any launch angle, with
+     * the edges moved out by MARGIN and the sides by TUBE_LENGTH as well.
+     *
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @return The viewport.
+     */
+    public static Viewport forImage(int width, int height) {
+        double halfWidth = getHalfWidth(width, height) + TUBE_LENGTH;
+        return new Viewport(-halfWidth, halfWidth, -MARGIN);
+    }
+
+    /**
+     * Returns the viewport of an image drawn by a FrameRenderer with a single tube at the given launch
+     * angle, with the edges moved out by MARGIN and the side the particles are moved away from by the
+     * tip of the tube as well.
+     *
+     * @param width       The width of the image in pixels.
+     * @param height      The height of the image in pixels.
+     * @param launchAngle The launch angle of the tube in degrees off the vertical.
+     * @return The viewport.
+     */
+    public static Viewport forImage(int width, int height, double launchAngle) {
+        double halfWidth = getHalfWidth(width, height);
+        double tipX = TUBE_LENGTH * Math.sin(Math.toRadians(launchAngle));    // metre
+        return new Viewport(-halfWidth - Math.max(tipX, 0), halfWidth - Math.min(tipX, 0), -MARGIN);
+    }
+
+    // Returns half the width of the world shown in an image, plus MARGIN, in metres.
+    private static double getHalfWidth(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Image size out of range: " + width + " x " + height);
+        return VIEW_HEIGHT / 2 * width / height + MARGIN;
+    }
+
+    /**
+     * Tells whether a particle may still be seen at some later time.
+     *
+     * @param x    The X position in metres.
+     * @param y    The Y position in metres.
+     * @param vx   The X velocity component in m/sec.
+     * @param vy   The Y velocity component in m/sec.
+     * @param wind The wind velocity in m/sec.
+     * @return False if the particle can never come back into view.
+     */
+    public boolean canReturn(double x, double y, double vx, double vy, double wind) {
+        if (y < ground && vy <= 0)
+            return false;
+        if (x < left && vx <= 0 && wind <= 0)
+            return false;
+        return !(x > right && vx >= 0 && wind >= 0);
+    }
+
+    public double getLeft() {
+        return left;
+    }
+
+    public double getRight() {
+        return right;
+    }
+
+    public double getGround() {
+        return ground;
+    }
+}